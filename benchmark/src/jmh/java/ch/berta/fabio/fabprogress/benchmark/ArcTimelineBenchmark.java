@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ch.berta.fabio.fabprogress.core.ArcFrame;
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+import ch.berta.fabio.fabprogress.core.CurveTable;
+
+/**
+ * Measures the per-frame update path of the progress arc on the JVM, i.e. everything a running
+ * FabProgress computes on a frame tick before it invalidates itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ArcTimelineBenchmark {
+
+    private static final long FRAME_DURATION = 16;
+    private static final CurveTable SWEEP_TABLE = CurveTable.decelerate(
+            (int) ArcTimeline.SWEEP_DURATION, ArcTimeline.MINIMUM_SWEEP_ANGLE,
+            ArcTimeline.MAXIMUM_SWEEP_ANGLE);
+    private final ArcFrame mFrame = new ArcFrame();
+    private long mPlayTime;
+
+    private long nextPlayTime() {
+        mPlayTime += FRAME_DURATION;
+        return mPlayTime;
+    }
+
+    /**
+     * Equivalent of the old {@code getAnimatedFraction()}: play time to interpolated fraction.
+     */
+    @Benchmark
+    public float animatedFraction() {
+        final long playTime = nextPlayTime() % ArcTimeline.SWEEP_DURATION;
+        return ArcTimeline.decelerate((float) playTime / ArcTimeline.SWEEP_DURATION);
+    }
+
+    /**
+     * Same as {@link #animatedFraction()}, but read from a baked table with one entry per
+     * millisecond, already mapped to the sweep angle.
+     */
+    @Benchmark
+    public float bakedSweep() {
+        return SWEEP_TABLE.get(nextPlayTime() % ArcTimeline.SWEEP_DURATION);
+    }
+
+    /**
+     * One update tick of the indeterminate spinner.
+     */
+    @Benchmark
+    public ArcFrame indeterminateTick() {
+        ArcTimeline.getIndeterminateFrame(nextPlayTime(), mFrame);
+        return mFrame;
+    }
+
+    /**
+     * One update tick of the final animation, including the lookup of the arc it started from.
+     */
+    @Benchmark
+    public ArcFrame completeTick() {
+        final long playTime = nextPlayTime() % ArcTimeline.COMPLETE_DURATION;
+        ArcTimeline.getIndeterminateFrame(ArcTimeline.CYCLE_DURATION, mFrame);
+        ArcTimeline.getCompleteFrame(playTime, ArcTimeline.COMPLETE_DURATION, mFrame.startAngle,
+                mFrame.sweepAngle, mFrame);
+        return mFrame;
+    }
+
+    /**
+     * All ticks of a start, final animation and reset cycle, with the final animation requested
+     * during the first spin cycle.
+     */
+    @Benchmark
+    public ArcFrame fullCycle() {
+        long playTime = 0;
+        final long completeStart = ArcTimeline.getCycleEndTime(FRAME_DURATION);
+        while (playTime < completeStart) {
+            ArcTimeline.getIndeterminateFrame(playTime, mFrame);
+            playTime += FRAME_DURATION;
+        }
+
+        do {
+            ArcTimeline.getIndeterminateFrame(completeStart, mFrame);
+            ArcTimeline.getCompleteFrame(playTime - completeStart, ArcTimeline.COMPLETE_DURATION,
+                    mFrame.startAngle, mFrame.sweepAngle, mFrame);
+            playTime += FRAME_DURATION;
+        } while (mFrame.phase != ArcTimeline.PHASE_DONE);
+
+        mFrame.reset();
+        return mFrame;
+    }
+}
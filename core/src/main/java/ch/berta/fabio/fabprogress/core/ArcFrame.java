@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+/**
+ * Holds the arc values of a single frame as computed by {@link ArcTimeline}. Instances are meant
+ * to be reused from frame to frame, which keeps the per-frame path free of allocations.
+ */
+public final class ArcFrame {
+
+    /**
+     * The phase of the timeline, one of the {@code PHASE_*} constants of {@link ArcTimeline}.
+     */
+    public int phase;
+    /**
+     * The angle in degrees where the arc starts, measured clockwise from the 3 o'clock position.
+     */
+    public float startAngle;
+    /**
+     * The angle in degrees the arc sweeps clockwise from {@link #startAngle}.
+     */
+    public float sweepAngle;
+
+    /**
+     * Copies the values of the other frame into this one.
+     *
+     * @param other the frame to copy the values from
+     */
+    public void set(ArcFrame other) {
+        phase = other.phase;
+        startAngle = other.startAngle;
+        sweepAngle = other.sweepAngle;
+    }
+
+    /**
+     * Resets the frame to an idle arc that is not visible.
+     */
+    public void reset() {
+        phase = ArcTimeline.PHASE_IDLE;
+        startAngle = 0;
+        sweepAngle = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "ArcFrame{" +
+                "phase=" + phase +
+                ", startAngle=" + startAngle +
+                ", sweepAngle=" + sweepAngle +
+                '}';
+    }
+}
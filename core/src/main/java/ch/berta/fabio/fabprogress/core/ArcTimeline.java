@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+/**
+ * Computes the arc of the progress circle for any point in time. The timeline is stateless: the
+ * start and sweep angles only depend on the play time that is passed in, which makes it possible
+ * to derive every frame from a single timestamp, to resume at any point without replaying the
+ * intermediate frames and to test the geometry on a plain JVM.
+ * <p/>
+ * All methods run in constant time and do not allocate. The curves are baked into shared
+ * {@link CurveTable}s when the class is loaded, so computing a frame mostly reads from them.
+ * <p/>
+ * The indeterminate timeline repeats a cycle of a grow phase followed by a shrink phase while the
+ * whole arc rotates at a constant speed. Every cycle moves the arc forward by
+ * {@link #CYCLE_ANGLE_OFFSET} degrees. The complete timeline grows the arc from any starting point
+ * to a full circle while the rotation slows down.
+ */
+public final class ArcTimeline {
+
+    public static final int PHASE_IDLE = 0;
+    public static final int PHASE_GROW = 1;
+    public static final int PHASE_SHRINK = 2;
+    public static final int PHASE_COMPLETE = 3;
+    public static final int PHASE_DONE = 4;
+    public static final int PHASE_DETERMINATE = 5;
+
+    public static final int MINIMUM_SWEEP_ANGLE = 20;
+    public static final int MAXIMUM_SWEEP_ANGLE = 300;
+    public static final int COMPLETE_SWEEP_ANGLE = MINIMUM_SWEEP_ANGLE + 360;
+    /**
+     * The angle a determinate arc starts at, the 12 o'clock position.
+     */
+    public static final int DETERMINATE_START_ANGLE = 270;
+    public static final long ROTATE_DURATION = 2000;
+    public static final long SWEEP_DURATION = 1000;
+    public static final long CYCLE_DURATION = SWEEP_DURATION * 2;
+    public static final long COMPLETE_DURATION = SWEEP_DURATION * 2;
+    public static final long COMPLETE_ROTATE_DURATION = COMPLETE_DURATION * 6;
+    /**
+     * The angle the arc moves forward in every cycle, the sum of the offsets applied when the arc
+     * starts shrinking and when it starts growing again.
+     */
+    public static final int CYCLE_ANGLE_OFFSET = (360 - MAXIMUM_SWEEP_ANGLE) + MINIMUM_SWEEP_ANGLE;
+    private static final float ROTATION_SPEED = 360f / ROTATE_DURATION;
+    /**
+     * The number of cycles after which the angle offset repeats itself. Used to keep the angles in
+     * a small range no matter how long the timeline runs.
+     */
+    private static final long OFFSET_PERIOD = 360 / gcd(360, CYCLE_ANGLE_OFFSET);
+    /**
+     * The number of steps of the complete curve, which is sampled by fraction because its
+     * duration can vary.
+     */
+    private static final int COMPLETE_CURVE_STEPS = 256;
+    /**
+     * The time in milliseconds between two samples of the complete rotation curve.
+     */
+    private static final int COMPLETE_ROTATION_STEP = 8;
+    /**
+     * The sweep angle for every millisecond of the grow phase.
+     */
+    private static final CurveTable GROW_SWEEP = CurveTable.decelerate((int) SWEEP_DURATION,
+            MINIMUM_SWEEP_ANGLE, MAXIMUM_SWEEP_ANGLE);
+    /**
+     * The sweep angle for every millisecond of the shrink phase.
+     */
+    private static final CurveTable SHRINK_SWEEP = CurveTable.decelerate((int) SWEEP_DURATION,
+            MAXIMUM_SWEEP_ANGLE, MINIMUM_SWEEP_ANGLE);
+    private static final CurveTable COMPLETE_FRACTION = CurveTable.decelerate(COMPLETE_CURVE_STEPS,
+            0, 1);
+    /**
+     * The rotation during the complete timeline: same initial speed as the indeterminate
+     * rotation, slowing down to zero.
+     */
+    private static final CurveTable COMPLETE_ROTATION = CurveTable.decelerate(
+            (int) (COMPLETE_ROTATE_DURATION / COMPLETE_ROTATION_STEP), 0,
+            ROTATION_SPEED * COMPLETE_ROTATE_DURATION / 2);
+
+    private ArcTimeline() {
+        // class cannot be instantiated
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Returns the phase of the indeterminate timeline at the given play time.
+     *
+     * @param playTime the time in milliseconds since the indeterminate timeline started
+     * @return either {@link #PHASE_GROW} or {@link #PHASE_SHRINK}
+     */
+    public static int getIndeterminatePhase(long playTime) {
+        return playTime % CYCLE_DURATION < SWEEP_DURATION ? PHASE_GROW : PHASE_SHRINK;
+    }
+
+    /**
+     * Returns the play time at which the currently running cycle of the indeterminate timeline
+     * ends, i.e. when the shrink phase that follows the current play time is finished.
+     *
+     * @param playTime the time in milliseconds since the indeterminate timeline started
+     * @return the play time in milliseconds at which the current cycle ends
+     */
+    public static long getCycleEndTime(long playTime) {
+        return (playTime / CYCLE_DURATION + 1) * CYCLE_DURATION;
+    }
+
+    /**
+     * Computes the arc of the indeterminate timeline at the given play time.
+     *
+     * @param playTime the time in milliseconds since the indeterminate timeline started
+     * @param out      the frame to write the phase and the angles into
+     */
+    public static void getIndeterminateFrame(long playTime, ArcFrame out) {
+        final long cycle = playTime / CYCLE_DURATION;
+        final long cyclePlayTime = playTime - cycle * CYCLE_DURATION;
+        final float rotation = (playTime % ROTATE_DURATION) * ROTATION_SPEED;
+        final float offset = (cycle % OFFSET_PERIOD) * CYCLE_ANGLE_OFFSET;
+
+        if (cyclePlayTime < SWEEP_DURATION) {
+            out.phase = PHASE_GROW;
+            out.sweepAngle = GROW_SWEEP.get(cyclePlayTime);
+            out.startAngle = normalize(rotation - offset);
+        } else {
+            out.phase = PHASE_SHRINK;
+            out.sweepAngle = SHRINK_SWEEP.get(cyclePlayTime - SWEEP_DURATION);
+            // the arc shrinks from its start, its end stays in place
+            out.startAngle = normalize(rotation - offset - (360 - MAXIMUM_SWEEP_ANGLE)
+                    + (360 - out.sweepAngle));
+        }
+    }
+
+    /**
+     * Computes the arc of a determinate progress, which starts at the top and sweeps clockwise.
+     *
+     * @param progress the progress between 0 and 1, values outside are clamped
+     * @param out      the frame to write the phase and the angles into
+     */
+    public static void getDeterminateFrame(float progress, ArcFrame out) {
+        out.phase = PHASE_DETERMINATE;
+        out.startAngle = DETERMINATE_START_ANGLE;
+        out.sweepAngle = Math.max(0f, Math.min(progress, 1f)) * 360f;
+    }
+
+    /**
+     * Computes the arc of the complete timeline at the given play time. The arc grows from the
+     * passed in angles to a full circle while its rotation continues at the indeterminate speed
+     * and slows down. Once the play time reaches the duration, the phase is {@link #PHASE_DONE}.
+     *
+     * @param playTime       the time in milliseconds since the complete timeline started
+     * @param duration       the duration of the complete timeline in milliseconds
+     * @param fromStartAngle the start angle of the arc when the complete timeline started
+     * @param fromSweepAngle the sweep angle of the arc when the complete timeline started
+     * @param out            the frame to write the phase and the angles into, may be the same
+     *                       instance the from angles were read from
+     */
+    public static void getCompleteFrame(long playTime, long duration, float fromStartAngle,
+                                        float fromSweepAngle, ArcFrame out) {
+        final float fraction = COMPLETE_FRACTION.sampleFraction((float) playTime / duration);
+        final float rotation = COMPLETE_ROTATION.sample((float) playTime / COMPLETE_ROTATION_STEP);
+
+        out.phase = playTime >= duration ? PHASE_DONE : PHASE_COMPLETE;
+        out.sweepAngle = fromSweepAngle + fraction * (COMPLETE_SWEEP_ANGLE - fromSweepAngle);
+        out.startAngle = normalize(fromStartAngle + rotation);
+    }
+
+    /**
+     * Returns the decelerating interpolation of the fraction, matching
+     * {@code android.view.animation.DecelerateInterpolator} with a factor of 1. Used to bake the
+     * {@link CurveTable}s.
+     *
+     * @param fraction the linear fraction between 0 and 1
+     * @return the interpolated fraction
+     */
+    public static float decelerate(float fraction) {
+        final float inverse = 1f - fraction;
+        return 1f - inverse * inverse;
+    }
+
+    private static float normalize(float angle) {
+        final float normalized = angle % 360f;
+        return normalized < 0 ? normalized + 360f : normalized;
+    }
+}
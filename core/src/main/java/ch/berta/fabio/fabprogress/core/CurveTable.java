@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+/**
+ * Holds an interpolation curve baked into a primitive lookup table. The table is computed once
+ * and is immutable afterwards, so it can be shared by every progress circle of the process.
+ * Sampling it costs one or two array reads and a linear interpolation between them.
+ */
+public final class CurveTable {
+
+    private final float[] mValues;
+    private final int mLastIndex;
+
+    private CurveTable(float[] values) {
+        mValues = values;
+        mLastIndex = values.length - 1;
+    }
+
+    /**
+     * Bakes the decelerating curve of {@link ArcTimeline#decelerate(float)}, mapped to the range
+     * between the two values.
+     *
+     * @param steps the number of steps between the first and the last sample, i.e. the table
+     *              holds {@code steps + 1} samples
+     * @param from  the value at the start of the curve
+     * @param to    the value at the end of the curve
+     * @return the baked curve
+     */
+    public static CurveTable decelerate(int steps, float from, float to) {
+        if (steps < 1) {
+            throw new IllegalArgumentException("steps must be at least 1");
+        }
+
+        final float[] values = new float[steps + 1];
+        for (int i = 0; i <= steps; i++) {
+            values[i] = from + ArcTimeline.decelerate((float) i / steps) * (to - from);
+        }
+        // avoid rounding errors at the end of the curve
+        values[steps] = to;
+
+        return new CurveTable(values);
+    }
+
+    /**
+     * Returns the number of steps of the table, the highest index that can be sampled.
+     *
+     * @return the number of steps of the table
+     */
+    public int getSteps() {
+        return mLastIndex;
+    }
+
+    /**
+     * Returns the sample at the given index, clamped to the table. For tables that have one step
+     * per time unit, this is a single array read.
+     *
+     * @param index the index of the sample
+     * @return the value of the curve at the index
+     */
+    public float get(long index) {
+        if (index <= 0) {
+            return mValues[0];
+        }
+
+        return index >= mLastIndex ? mValues[mLastIndex] : mValues[(int) index];
+    }
+
+    /**
+     * Samples the curve at the given position, linearly interpolating between the two closest
+     * samples.
+     *
+     * @param position the position between 0 and {@link #getSteps()}, values outside are clamped
+     * @return the value of the curve at the position
+     */
+    public float sample(float position) {
+        if (position <= 0) {
+            return mValues[0];
+        }
+        if (position >= mLastIndex) {
+            return mValues[mLastIndex];
+        }
+
+        final int index = (int) position;
+        final float lower = mValues[index];
+        return lower + (position - index) * (mValues[index + 1] - lower);
+    }
+
+    /**
+     * Samples the curve at the given fraction of its length.
+     *
+     * @param fraction the fraction between 0 and 1, values outside are clamped
+     * @return the value of the curve at the fraction
+     */
+    public float sampleFraction(float fraction) {
+        return sample(fraction * mLastIndex);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Holds the most recent frames of a progress circle in a fixed-size ring buffer of compact binary
+ * records, for offline jank analysis with {@link FrameTraceReader}. Recording a frame writes a
+ * few primitives into a preallocated buffer and never allocates.
+ * <p/>
+ * A trace file starts with a header of {@link #HEADER_SIZE} bytes: the magic number, the format
+ * version, the number of records and the number of older records that were overwritten. It is
+ * followed by the records, oldest first, each {@link #RECORD_SIZE} bytes: the vsync time in
+ * nanoseconds, the phase, the start and sweep angles and the draw duration in nanoseconds, which
+ * is -1 if the frame was not drawn. All values are big-endian.
+ * <p/>
+ * Not thread-safe, use {@link #copyFrom(FrameTrace)} to hand a snapshot to another thread.
+ */
+public final class FrameTrace {
+
+    public static final int MAGIC = 0x46505452; // "FPTR"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 24;
+    /**
+     * The phase of frames in which the icon of the button fades, in addition to the phases of
+     * {@link ArcTimeline}. The sweep angle of these frames holds the alpha of the icon.
+     */
+    public static final int PHASE_ICON_FADE = 6;
+    public static final int NOT_DRAWN = -1;
+    private static final int OFFSET_PHASE = 8;
+    private static final int OFFSET_START_ANGLE = 12;
+    private static final int OFFSET_SWEEP_ANGLE = 16;
+    private static final int OFFSET_DRAW_DURATION = 20;
+    private final ByteBuffer mRecords;
+    private final int mCapacity;
+    private int mNext;
+    private long mTotal;
+
+    /**
+     * Constructs a new {@link FrameTrace}.
+     *
+     * @param capacity the number of frames to keep, older ones are overwritten
+     */
+    public FrameTrace(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        mCapacity = capacity;
+        mRecords = ByteBuffer.allocate(capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Records a frame. Its draw duration is {@link #NOT_DRAWN} until it is set with
+     * {@link #setLastDrawDuration(long)}.
+     *
+     * @param frameTimeNanos the vsync time of the frame
+     * @param phase          the phase of the frame, one of the {@code PHASE_*} constants of
+     *                       {@link ArcTimeline} or {@link #PHASE_ICON_FADE}
+     * @param startAngle     the start angle of the arc
+     * @param sweepAngle     the sweep angle of the arc
+     */
+    public void record(long frameTimeNanos, int phase, float startAngle, float sweepAngle) {
+        final int offset = mNext * RECORD_SIZE;
+        mRecords.putLong(offset, frameTimeNanos);
+        mRecords.putInt(offset + OFFSET_PHASE, phase);
+        mRecords.putFloat(offset + OFFSET_START_ANGLE, startAngle);
+        mRecords.putFloat(offset + OFFSET_SWEEP_ANGLE, sweepAngle);
+        mRecords.putInt(offset + OFFSET_DRAW_DURATION, NOT_DRAWN);
+
+        mNext = mNext + 1 == mCapacity ? 0 : mNext + 1;
+        mTotal++;
+    }
+
+    /**
+     * Sets the draw duration of the most recent frame. Has no effect if no frame was recorded.
+     *
+     * @param durationNanos the draw duration in nanoseconds
+     */
+    public void setLastDrawDuration(long durationNanos) {
+        if (mTotal == 0) {
+            return;
+        }
+
+        final int last = mNext == 0 ? mCapacity - 1 : mNext - 1;
+        mRecords.putInt(last * RECORD_SIZE + OFFSET_DRAW_DURATION,
+                (int) Math.min(durationNanos, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Returns the number of frames held in the buffer.
+     *
+     * @return the number of frames held in the buffer
+     */
+    public int getCount() {
+        return (int) Math.min(mTotal, mCapacity);
+    }
+
+    /**
+     * Returns the number of frames that were overwritten because the buffer was full.
+     *
+     * @return the number of overwritten frames
+     */
+    public long getDropped() {
+        return mTotal - getCount();
+    }
+
+    /**
+     * Removes all frames.
+     */
+    public void clear() {
+        mNext = 0;
+        mTotal = 0;
+    }
+
+    /**
+     * Replaces the frames of this trace with those of the other one, which must have the same
+     * capacity. Copies the buffer without allocating.
+     *
+     * @param other the trace to copy
+     */
+    public void copyFrom(FrameTrace other) {
+        if (other.mCapacity != mCapacity) {
+            throw new IllegalArgumentException("capacities do not match");
+        }
+
+        System.arraycopy(other.mRecords.array(), 0, mRecords.array(), 0, mCapacity * RECORD_SIZE);
+        mNext = other.mNext;
+        mTotal = other.mTotal;
+    }
+
+    /**
+     * Writes the header and the frames, oldest first, to the stream.
+     *
+     * @param out the stream to write to, is not closed
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final int count = getCount();
+        final DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(count);
+        data.writeInt((int) Math.min(getDropped(), Integer.MAX_VALUE));
+
+        final byte[] records = mRecords.array();
+        final int oldest = count < mCapacity ? 0 : mNext;
+        final int tail = Math.min(count, mCapacity - oldest);
+        data.write(records, oldest * RECORD_SIZE, tail * RECORD_SIZE);
+        data.write(records, 0, (count - tail) * RECORD_SIZE);
+        data.flush();
+    }
+}
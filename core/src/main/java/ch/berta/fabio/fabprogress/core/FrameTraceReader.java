@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the frames of a trace written by {@link FrameTrace#writeTo(java.io.OutputStream)}, oldest
+ * first.
+ */
+public final class FrameTraceReader {
+
+    private final DataInputStream mInput;
+    private final int mCount;
+    private final int mDropped;
+    private int mRead;
+
+    /**
+     * Constructs a new {@link FrameTraceReader} and reads the header of the trace.
+     *
+     * @param in the stream to read the trace from
+     * @throws IOException if reading fails or the stream does not contain a trace
+     */
+    public FrameTraceReader(InputStream in) throws IOException {
+        mInput = new DataInputStream(in);
+        if (mInput.readInt() != FrameTrace.MAGIC) {
+            throw new IOException("not a frame trace");
+        }
+        final int version = mInput.readInt();
+        if (version != FrameTrace.VERSION) {
+            throw new IOException("unsupported trace version " + version);
+        }
+        mCount = mInput.readInt();
+        mDropped = mInput.readInt();
+    }
+
+    /**
+     * Returns the number of frames in the trace.
+     *
+     * @return the number of frames in the trace
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the number of frames that were overwritten before the trace was written.
+     *
+     * @return the number of frames that are missing at the start of the trace
+     */
+    public int getDropped() {
+        return mDropped;
+    }
+
+    /**
+     * Reads the next frame.
+     *
+     * @param out the record to read the frame into
+     * @return false if there are no more frames
+     * @throws IOException if reading fails or the trace is truncated
+     */
+    public boolean next(Record out) throws IOException {
+        if (mRead == mCount) {
+            return false;
+        }
+
+        try {
+            out.frameTimeNanos = mInput.readLong();
+            out.phase = mInput.readInt();
+            out.startAngle = mInput.readFloat();
+            out.sweepAngle = mInput.readFloat();
+            out.drawDurationNanos = mInput.readInt();
+        } catch (EOFException e) {
+            throw new IOException("trace is truncated after " + mRead + " frames", e);
+        }
+        mRead++;
+
+        return true;
+    }
+
+    /**
+     * Holds a single frame of a trace. Meant to be reused for all frames.
+     */
+    public static final class Record {
+        public long frameTimeNanos;
+        public int phase;
+        public float startAngle;
+        public float sweepAngle;
+        /**
+         * The duration of the draw in nanoseconds, {@link FrameTrace#NOT_DRAWN} if the frame was
+         * not drawn.
+         */
+        public int drawDurationNanos;
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Replays a frame trace and reports the gaps between frames and the time spent in each phase.
+ * Meant to be run on a desktop JVM against a trace pulled from a device:
+ * <pre>
+ * java -cp core.jar ch.berta.fabio.fabprogress.core.FrameTraceReport trace.bin [intervalMs]
+ * </pre>
+ */
+public final class FrameTraceReport {
+
+    /**
+     * The frame interval of a 60 Hz display.
+     */
+    public static final long DEFAULT_FRAME_INTERVAL_NANOS = 16666667;
+    private static final int PHASE_COUNT = FrameTrace.PHASE_ICON_FADE + 1;
+    private static final String[] PHASE_NAMES = {"idle", "grow", "shrink", "complete", "done",
+            "determinate", "icon fade"};
+    private final long mFrameIntervalNanos;
+    private final List<Gap> mGaps = new ArrayList<>();
+    private final int[] mPhaseFrames = new int[PHASE_COUNT];
+    private final long[] mPhaseTimeNanos = new long[PHASE_COUNT];
+    private final long[] mPhaseDrawNanos = new long[PHASE_COUNT];
+    private final int[] mPhaseDrawCount = new int[PHASE_COUNT];
+    private int mFrames;
+    private int mDroppedRecords;
+    private int mUndrawnFrames;
+    private long mMissedFrames;
+    private long mMaxDrawNanos;
+
+    private FrameTraceReport(long frameIntervalNanos) {
+        mFrameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * Reads all frames of the trace and analyses them.
+     *
+     * @param reader             the reader to read the frames from
+     * @param frameIntervalNanos the expected interval between two frames, a gap is reported when
+     *                           two frames are more than one and a half intervals apart
+     * @return the report of the trace
+     * @throws IOException if reading the trace fails
+     */
+    public static FrameTraceReport analyze(FrameTraceReader reader, long frameIntervalNanos)
+            throws IOException {
+        if (frameIntervalNanos <= 0) {
+            throw new IllegalArgumentException("frame interval must be positive");
+        }
+
+        final FrameTraceReport report = new FrameTraceReport(frameIntervalNanos);
+        report.mDroppedRecords = reader.getDropped();
+
+        final FrameTraceReader.Record record = new FrameTraceReader.Record();
+        final long gapThreshold = frameIntervalNanos + frameIntervalNanos / 2;
+        long previousTime = 0;
+        int previousPhase = -1;
+        while (reader.next(record)) {
+            final int phase = record.phase >= 0 && record.phase < PHASE_COUNT ? record.phase : 0;
+            report.mFrames++;
+            report.mPhaseFrames[phase]++;
+
+            if (record.drawDurationNanos == FrameTrace.NOT_DRAWN) {
+                report.mUndrawnFrames++;
+            } else {
+                report.mPhaseDrawNanos[phase] += record.drawDurationNanos;
+                report.mPhaseDrawCount[phase]++;
+                report.mMaxDrawNanos = Math.max(report.mMaxDrawNanos, record.drawDurationNanos);
+            }
+
+            if (previousPhase >= 0) {
+                // the time until this frame was spent showing the previous one
+                final long delta = record.frameTimeNanos - previousTime;
+                report.mPhaseTimeNanos[previousPhase] += delta;
+                if (delta > gapThreshold) {
+                    final long missed = Math.round((double) delta / frameIntervalNanos) - 1;
+                    report.mMissedFrames += missed;
+                    report.mGaps.add(new Gap(previousTime, delta, previousPhase, phase));
+                }
+            }
+            previousTime = record.frameTimeNanos;
+            previousPhase = phase;
+        }
+
+        return report;
+    }
+
+    /**
+     * Prints the report of the trace file given as first argument. The optional second argument
+     * is the expected frame interval in milliseconds.
+     *
+     * @param args the path of the trace file and optionally the frame interval
+     * @throws IOException if reading the trace fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: FrameTraceReport <trace file> [frame interval ms]");
+            System.exit(2);
+            return;
+        }
+
+        final long interval = args.length > 1
+                ? (long) (Double.parseDouble(args[1]) * 1000000)
+                : DEFAULT_FRAME_INTERVAL_NANOS;
+        final InputStream in = new BufferedInputStream(new FileInputStream(args[0]));
+        try {
+            System.out.print(analyze(new FrameTraceReader(in), interval));
+        } finally {
+            in.close();
+        }
+    }
+
+    public int getFrameCount() {
+        return mFrames;
+    }
+
+    /**
+     * Returns the number of frames that were overwritten on the device before the trace was
+     * written and are therefore missing from the report.
+     *
+     * @return the number of frames missing at the start of the trace
+     */
+    public int getDroppedRecordCount() {
+        return mDroppedRecords;
+    }
+
+    public int getUndrawnFrameCount() {
+        return mUndrawnFrames;
+    }
+
+    /**
+     * Returns the number of vsyncs that passed without a frame, summed over all gaps.
+     *
+     * @return the number of missed frames
+     */
+    public long getMissedFrameCount() {
+        return mMissedFrames;
+    }
+
+    public List<Gap> getGaps() {
+        return Collections.unmodifiableList(mGaps);
+    }
+
+    public long getMaxDrawNanos() {
+        return mMaxDrawNanos;
+    }
+
+    public int getPhaseFrameCount(int phase) {
+        return mPhaseFrames[phase];
+    }
+
+    /**
+     * Returns the time from the first frame of the phase until the frame that followed its last
+     * one, summed over all occurrences of the phase.
+     *
+     * @param phase the phase to get the time for
+     * @return the time spent in the phase in nanoseconds
+     */
+    public long getPhaseTimeNanos(int phase) {
+        return mPhaseTimeNanos[phase];
+    }
+
+    /**
+     * Returns the average draw duration of the drawn frames of the phase.
+     *
+     * @param phase the phase to get the average draw duration for
+     * @return the average draw duration in nanoseconds, 0 if no frame of the phase was drawn
+     */
+    public long getPhaseAverageDrawNanos(int phase) {
+        final int count = mPhaseDrawCount[phase];
+        return count == 0 ? 0 : mPhaseDrawNanos[phase] / count;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "frames: %d (%d not drawn, %d dropped from buffer)%n",
+                mFrames, mUndrawnFrames, mDroppedRecords));
+        sb.append(String.format(Locale.US, "gaps: %d, missed frames: %d, max draw: %.2f ms%n",
+                mGaps.size(), mMissedFrames, mMaxDrawNanos / 1e6));
+
+        sb.append(String.format(Locale.US, "%-12s %8s %12s %14s%n", "phase", "frames",
+                "time ms", "avg draw ms"));
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            if (mPhaseFrames[i] == 0) {
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%-12s %8d %12.1f %14.3f%n", PHASE_NAMES[i],
+                    mPhaseFrames[i], mPhaseTimeNanos[i] / 1e6,
+                    getPhaseAverageDrawNanos(i) / 1e6));
+        }
+
+        for (Gap gap : mGaps) {
+            sb.append(String.format(Locale.US, "gap at %.1f ms: %.1f ms (%s -> %s)%n",
+                    gap.getAfterFrameTimeNanos() / 1e6, gap.getDurationNanos() / 1e6,
+                    PHASE_NAMES[gap.getFromPhase()], PHASE_NAMES[gap.getToPhase()]));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Describes two consecutive frames that are further apart than expected.
+     */
+    public static final class Gap {
+        private final long mAfterFrameTimeNanos;
+        private final long mDurationNanos;
+        private final int mFromPhase;
+        private final int mToPhase;
+
+        Gap(long afterFrameTimeNanos, long durationNanos, int fromPhase, int toPhase) {
+            mAfterFrameTimeNanos = afterFrameTimeNanos;
+            mDurationNanos = durationNanos;
+            mFromPhase = fromPhase;
+            mToPhase = toPhase;
+        }
+
+        /**
+         * Returns the vsync time of the frame before the gap.
+         *
+         * @return the vsync time of the frame before the gap
+         */
+        public long getAfterFrameTimeNanos() {
+            return mAfterFrameTimeNanos;
+        }
+
+        public long getDurationNanos() {
+            return mDurationNanos;
+        }
+
+        public int getFromPhase() {
+            return mFromPhase;
+        }
+
+        public int getToPhase() {
+            return mToPhase;
+        }
+    }
+}
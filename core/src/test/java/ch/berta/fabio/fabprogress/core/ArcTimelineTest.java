@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArcTimelineTest {
+
+    private static final float DELTA = 0.01f;
+
+    private static float angleDistance(float a, float b) {
+        final float diff = Math.abs(a - b) % 360f;
+        return Math.min(diff, 360f - diff);
+    }
+
+    @Test
+    public void indeterminate_startsWithMinimumSweep() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+        ArcTimeline.getIndeterminateFrame(0, frame);
+
+        assertEquals(ArcTimeline.PHASE_GROW, frame.phase);
+        assertEquals(ArcTimeline.MINIMUM_SWEEP_ANGLE, frame.sweepAngle, DELTA);
+        assertEquals(0f, frame.startAngle, DELTA);
+    }
+
+    @Test
+    public void indeterminate_isContinuous() throws Exception {
+        final ArcFrame previous = new ArcFrame();
+        final ArcFrame current = new ArcFrame();
+        ArcTimeline.getIndeterminateFrame(0, previous);
+
+        for (long playTime = 1; playTime < ArcTimeline.CYCLE_DURATION * 20; playTime++) {
+            ArcTimeline.getIndeterminateFrame(playTime, current);
+
+            assertTrue("sweep jumps at " + playTime,
+                    Math.abs(current.sweepAngle - previous.sweepAngle) < 1f);
+            assertTrue("start jumps at " + playTime,
+                    angleDistance(current.startAngle, previous.startAngle) < 1f);
+            previous.set(current);
+        }
+    }
+
+    @Test
+    public void indeterminate_switchesPhases() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+
+        ArcTimeline.getIndeterminateFrame(ArcTimeline.SWEEP_DURATION - 1, frame);
+        assertEquals(ArcTimeline.PHASE_GROW, frame.phase);
+        ArcTimeline.getIndeterminateFrame(ArcTimeline.SWEEP_DURATION, frame);
+        assertEquals(ArcTimeline.PHASE_SHRINK, frame.phase);
+        assertEquals(ArcTimeline.MAXIMUM_SWEEP_ANGLE, frame.sweepAngle, DELTA);
+        ArcTimeline.getIndeterminateFrame(ArcTimeline.CYCLE_DURATION, frame);
+        assertEquals(ArcTimeline.PHASE_GROW, frame.phase);
+        assertEquals(ArcTimeline.MINIMUM_SWEEP_ANGLE, frame.sweepAngle, DELTA);
+    }
+
+    @Test
+    public void indeterminate_staysInRangeForLongPlayTimes() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+        ArcTimeline.getIndeterminateFrame(Long.MAX_VALUE / 2, frame);
+
+        assertTrue(frame.startAngle >= 0f && frame.startAngle < 360f);
+        assertTrue(frame.sweepAngle >= ArcTimeline.MINIMUM_SWEEP_ANGLE);
+        assertTrue(frame.sweepAngle <= ArcTimeline.MAXIMUM_SWEEP_ANGLE);
+    }
+
+    @Test
+    public void cycleEndTime_isEndOfCurrentShrink() throws Exception {
+        assertEquals(ArcTimeline.CYCLE_DURATION, ArcTimeline.getCycleEndTime(0));
+        assertEquals(ArcTimeline.CYCLE_DURATION, ArcTimeline.getCycleEndTime(ArcTimeline.CYCLE_DURATION - 1));
+        assertEquals(ArcTimeline.CYCLE_DURATION * 2, ArcTimeline.getCycleEndTime(ArcTimeline.CYCLE_DURATION));
+    }
+
+    @Test
+    public void complete_growsToFullCircle() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+
+        ArcTimeline.getCompleteFrame(0, ArcTimeline.COMPLETE_DURATION, 42f, 20f, frame);
+        assertEquals(ArcTimeline.PHASE_COMPLETE, frame.phase);
+        assertEquals(20f, frame.sweepAngle, DELTA);
+        assertEquals(42f, frame.startAngle, DELTA);
+
+        ArcTimeline.getCompleteFrame(ArcTimeline.COMPLETE_DURATION, ArcTimeline.COMPLETE_DURATION,
+                42f, 20f, frame);
+        assertEquals(ArcTimeline.PHASE_DONE, frame.phase);
+        assertEquals(ArcTimeline.COMPLETE_SWEEP_ANGLE, frame.sweepAngle, DELTA);
+    }
+
+    @Test
+    public void complete_continuesFromIndeterminateArc() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+        ArcTimeline.getIndeterminateFrame(1234, frame);
+        final float startAngle = frame.startAngle;
+        final float sweepAngle = frame.sweepAngle;
+
+        ArcTimeline.getCompleteFrame(0, 500, frame.startAngle, frame.sweepAngle, frame);
+
+        assertEquals(startAngle, frame.startAngle, DELTA);
+        assertEquals(sweepAngle, frame.sweepAngle, DELTA);
+    }
+
+    @Test
+    public void determinate_startsAtTopAndClamps() throws Exception {
+        final ArcFrame frame = new ArcFrame();
+
+        ArcTimeline.getDeterminateFrame(0.25f, frame);
+        assertEquals(ArcTimeline.PHASE_DETERMINATE, frame.phase);
+        assertEquals(ArcTimeline.DETERMINATE_START_ANGLE, frame.startAngle, DELTA);
+        assertEquals(90f, frame.sweepAngle, DELTA);
+
+        ArcTimeline.getDeterminateFrame(1.5f, frame);
+        assertEquals(360f, frame.sweepAngle, DELTA);
+        ArcTimeline.getDeterminateFrame(-1f, frame);
+        assertEquals(0f, frame.sweepAngle, DELTA);
+    }
+
+    @Test
+    public void frame_doesNotAllocate() throws Exception {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final ArcFrame frame = new ArcFrame();
+        // warm up so that the measurement does not include class loading
+        for (long playTime = 0; playTime < 10000; playTime++) {
+            ArcTimeline.getIndeterminateFrame(playTime, frame);
+            ArcTimeline.getCompleteFrame(playTime, ArcTimeline.COMPLETE_DURATION, 0, 20, frame);
+        }
+
+        final long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (long playTime = 0; playTime < 100000; playTime++) {
+            ArcTimeline.getIndeterminateFrame(playTime, frame);
+            ArcTimeline.getCompleteFrame(playTime, ArcTimeline.COMPLETE_DURATION, 0, 20, frame);
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        // allow for the bytes the measurement itself may allocate
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
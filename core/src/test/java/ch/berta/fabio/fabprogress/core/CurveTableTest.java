@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CurveTableTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void decelerate_matchesCurveAtSamples() throws Exception {
+        final CurveTable table = CurveTable.decelerate(1000, 20, 300);
+
+        for (int i = 0; i <= 1000; i++) {
+            final float expected = 20 + ArcTimeline.decelerate(i / 1000f) * 280;
+            assertEquals(expected, table.get(i), DELTA);
+        }
+    }
+
+    @Test
+    public void sample_interpolatesBetweenSamples() throws Exception {
+        final CurveTable table = CurveTable.decelerate(256, 0, 1);
+
+        for (int i = 0; i <= 1000; i++) {
+            final float fraction = i / 1000f;
+            assertEquals(ArcTimeline.decelerate(fraction), table.sampleFraction(fraction), DELTA);
+        }
+    }
+
+    @Test
+    public void sample_clampsToEnds() throws Exception {
+        final CurveTable table = CurveTable.decelerate(8, 10, 50);
+
+        assertEquals(10f, table.sample(-1f), 0f);
+        assertEquals(50f, table.sample(9f), 0f);
+        assertEquals(10f, table.get(-1), 0f);
+        assertEquals(50f, table.get(100), 0f);
+        assertEquals(50f, table.sampleFraction(1f), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decelerate_rejectsEmptyTable() throws Exception {
+        CurveTable.decelerate(0, 0, 1);
+    }
+}
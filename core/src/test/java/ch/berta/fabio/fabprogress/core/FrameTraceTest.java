@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrameTraceTest {
+
+    private static final long INTERVAL = FrameTraceReport.DEFAULT_FRAME_INTERVAL_NANOS;
+
+    private static FrameTraceReader readBack(FrameTrace trace) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        trace.writeTo(out);
+        return new FrameTraceReader(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void writeTo_roundTripKeepsFramesInOrder() throws Exception {
+        final FrameTrace trace = new FrameTrace(8);
+        trace.record(100, ArcTimeline.PHASE_GROW, 10f, 20f);
+        trace.setLastDrawDuration(500);
+        trace.record(200, ArcTimeline.PHASE_SHRINK, 30f, 40f);
+
+        final FrameTraceReader reader = readBack(trace);
+        assertEquals(2, reader.getCount());
+        assertEquals(0, reader.getDropped());
+
+        final FrameTraceReader.Record record = new FrameTraceReader.Record();
+        assertTrue(reader.next(record));
+        assertEquals(100, record.frameTimeNanos);
+        assertEquals(ArcTimeline.PHASE_GROW, record.phase);
+        assertEquals(10f, record.startAngle, 0f);
+        assertEquals(20f, record.sweepAngle, 0f);
+        assertEquals(500, record.drawDurationNanos);
+
+        assertTrue(reader.next(record));
+        assertEquals(200, record.frameTimeNanos);
+        assertEquals(FrameTrace.NOT_DRAWN, record.drawDurationNanos);
+        assertFalse(reader.next(record));
+    }
+
+    @Test
+    public void record_fullBufferKeepsNewestFramesOldestFirst() throws Exception {
+        final FrameTrace trace = new FrameTrace(3);
+        for (int i = 1; i <= 5; i++) {
+            trace.record(i, ArcTimeline.PHASE_GROW, 0f, 0f);
+        }
+        assertEquals(3, trace.getCount());
+        assertEquals(2, trace.getDropped());
+
+        final FrameTraceReader reader = readBack(trace);
+        assertEquals(2, reader.getDropped());
+        final FrameTraceReader.Record record = new FrameTraceReader.Record();
+        final long[] times = new long[3];
+        for (int i = 0; reader.next(record); i++) {
+            times[i] = record.frameTimeNanos;
+        }
+        assertTrue(Arrays.equals(new long[]{3, 4, 5}, times));
+    }
+
+    @Test
+    public void copyFrom_snapshotsFrames() throws Exception {
+        final FrameTrace trace = new FrameTrace(4);
+        trace.record(1, ArcTimeline.PHASE_GROW, 0f, 0f);
+        final FrameTrace snapshot = new FrameTrace(4);
+        snapshot.copyFrom(trace);
+        trace.record(2, ArcTimeline.PHASE_GROW, 0f, 0f);
+
+        assertEquals(1, snapshot.getCount());
+        assertEquals(1, readBack(snapshot).getCount());
+    }
+
+    @Test
+    public void reader_rejectsForeignData() throws Exception {
+        try {
+            new FrameTraceReader(new ByteArrayInputStream(new byte[FrameTrace.HEADER_SIZE]));
+            fail("expected an IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void analyze_findsGapsAndPhaseTimings() throws Exception {
+        final FrameTrace trace = new FrameTrace(16);
+        long time = 0;
+        for (int i = 0; i < 4; i++) {
+            trace.record(time, ArcTimeline.PHASE_GROW, 0f, 0f);
+            trace.setLastDrawDuration(1000);
+            time += INTERVAL;
+        }
+        // skip two vsyncs
+        time += 2 * INTERVAL;
+        trace.record(time, ArcTimeline.PHASE_SHRINK, 0f, 0f);
+        time += INTERVAL;
+        trace.record(time, FrameTrace.PHASE_ICON_FADE, 0f, 0f);
+        trace.setLastDrawDuration(3000);
+
+        final FrameTraceReport report = FrameTraceReport.analyze(readBack(trace), INTERVAL);
+        assertEquals(6, report.getFrameCount());
+        assertEquals(1, report.getUndrawnFrameCount());
+        assertEquals(1, report.getGaps().size());
+        assertEquals(2, report.getMissedFrameCount());
+        assertEquals(3 * INTERVAL, report.getGaps().get(0).getDurationNanos());
+        assertEquals(ArcTimeline.PHASE_GROW, report.getGaps().get(0).getFromPhase());
+        assertEquals(4, report.getPhaseFrameCount(ArcTimeline.PHASE_GROW));
+        assertEquals(6 * INTERVAL, report.getPhaseTimeNanos(ArcTimeline.PHASE_GROW));
+        assertEquals(1000, report.getPhaseAverageDrawNanos(ArcTimeline.PHASE_GROW));
+        assertEquals(3000, report.getMaxDrawNanos());
+    }
+}
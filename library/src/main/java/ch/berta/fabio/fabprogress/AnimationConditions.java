@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.provider.Settings;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * Tracks the system settings that decide how much a progress circle should animate: the battery
+ * saver and the global animator duration scale. Both are read once and then kept up to date by a
+ * broadcast receiver and a settings observer, which are only registered while there are
+ * listeners, so reading them per frame is free.
+ * <p/>
+ * Must only be used from the main thread.
+ */
+final class AnimationConditions {
+
+    private static AnimationConditions sInstance;
+    private final Context mAppContext;
+    private final ArrayList<OnChangedListener> mListeners = new ArrayList<>();
+    private final BroadcastReceiver mPowerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            setConditions(readPowerSaveMode(), mAnimatorDurationScale);
+        }
+    };
+    private final ContentObserver mScaleObserver =
+            new ContentObserver(new Handler(Looper.getMainLooper())) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    setConditions(mPowerSaveMode, readAnimatorDurationScale());
+                }
+            };
+    private boolean mPowerSaveMode;
+    private float mAnimatorDurationScale = 1f;
+    private boolean mRegistered;
+
+    private AnimationConditions(@NonNull Context context) {
+        mAppContext = context.getApplicationContext();
+    }
+
+    /**
+     * Returns the shared instance.
+     *
+     * @param context the context to get the application context from
+     * @return the shared instance
+     */
+    static AnimationConditions getInstance(@NonNull Context context) {
+        if (sInstance == null) {
+            sInstance = new AnimationConditions(context);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Subscribes the listener to changes of the conditions and starts watching the system
+     * settings if it is the first one. Adding an already subscribed listener has no effect.
+     *
+     * @param listener the listener to call when a condition changes
+     */
+    void addListener(@NonNull OnChangedListener listener) {
+        if (mListeners.contains(listener)) {
+            return;
+        }
+
+        mListeners.add(listener);
+        if (!mRegistered) {
+            register();
+        }
+    }
+
+    /**
+     * Unsubscribes the listener and stops watching the system settings if it was the last one.
+     *
+     * @param listener the listener to remove
+     */
+    void removeListener(@NonNull OnChangedListener listener) {
+        if (mListeners.remove(listener) && mListeners.isEmpty() && mRegistered) {
+            unregister();
+        }
+    }
+
+    /**
+     * Returns whether the system settings are watched, i.e. whether there are listeners.
+     *
+     * @return whether the system settings are watched
+     */
+    boolean isWatching() {
+        return mRegistered;
+    }
+
+    /**
+     * Returns whether the battery saver is on. Only up to date while there are listeners.
+     *
+     * @return whether the battery saver is on
+     */
+    boolean isPowerSaveMode() {
+        return mPowerSaveMode;
+    }
+
+    /**
+     * Returns whether the user turned animations off in the developer or accessibility settings.
+     * Only up to date while there are listeners.
+     *
+     * @return whether animations are turned off
+     */
+    boolean areAnimationsDisabled() {
+        return mAnimatorDurationScale == 0f;
+    }
+
+    private void register() {
+        mRegistered = true;
+        if (Utils.isRunningLollipopAndHigher()) {
+            mAppContext.registerReceiver(mPowerSaveReceiver,
+                    new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        }
+        mAppContext.getContentResolver().registerContentObserver(
+                Settings.Global.getUriFor(Settings.Global.ANIMATOR_DURATION_SCALE), false,
+                mScaleObserver);
+
+        // nothing was watched before, read the current values
+        mPowerSaveMode = readPowerSaveMode();
+        mAnimatorDurationScale = readAnimatorDurationScale();
+    }
+
+    private void unregister() {
+        mRegistered = false;
+        if (Utils.isRunningLollipopAndHigher()) {
+            mAppContext.unregisterReceiver(mPowerSaveReceiver);
+        }
+        mAppContext.getContentResolver().unregisterContentObserver(mScaleObserver);
+    }
+
+    private boolean readPowerSaveMode() {
+        if (!Utils.isRunningLollipopAndHigher()) {
+            return false;
+        }
+
+        final PowerManager powerManager =
+                (PowerManager) mAppContext.getSystemService(Context.POWER_SERVICE);
+        return powerManager != null && powerManager.isPowerSaveMode();
+    }
+
+    private float readAnimatorDurationScale() {
+        return Settings.Global.getFloat(mAppContext.getContentResolver(),
+                Settings.Global.ANIMATOR_DURATION_SCALE, 1f);
+    }
+
+    /**
+     * Updates the conditions and calls the listeners if they changed.
+     *
+     * @param powerSaveMode         whether the battery saver is on
+     * @param animatorDurationScale the global animator duration scale
+     */
+    void setConditions(boolean powerSaveMode, float animatorDurationScale) {
+        if (powerSaveMode == mPowerSaveMode && animatorDurationScale == mAnimatorDurationScale) {
+            return;
+        }
+
+        mPowerSaveMode = powerSaveMode;
+        mAnimatorDurationScale = animatorDurationScale;
+        dispatchChanged();
+    }
+
+    private void dispatchChanged() {
+        // listeners may unsubscribe while being called
+        for (int i = mListeners.size() - 1; i >= 0; i--) {
+            if (i < mListeners.size()) {
+                mListeners.get(i).onAnimationConditionsChanged();
+            }
+        }
+    }
+
+    /**
+     * Defines the callback that gets called when the battery saver or the animator duration scale
+     * changes.
+     */
+    interface OnChangedListener {
+        /**
+         * Called on the main thread after a condition changed.
+         */
+        void onAnimationConditionsChanged();
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LongSparseArray;
+
+/**
+ * Holds every sweep angle of the arc pre-rendered into a single {@link Bitmap.Config#ALPHA_8}
+ * bitmap, so that drawing a frame is one rotated bitmap blit instead of an anti-aliased
+ * {@link Canvas#drawArc(RectF, float, float, boolean, Paint)}, which is expensive in software
+ * rendering.
+ * <p/>
+ * The sprites start at 0 degrees, the start angle is applied by rotating the canvas. Sweep angles
+ * are rounded down to {@link #SWEEP_STEP}, so a sprite never covers more than the arc it stands
+ * for and the dirty bounds of the arc stay valid. The paint's color is applied when blitting.
+ * <p/>
+ * Every sprite is surrounded by a transparent border of {@link #CELL_PADDING} pixels, so that a
+ * filtered blit never picks up the neighbouring sprite.
+ * <p/>
+ * Atlases are shared by all drawables with the same size, stroke width and cap. The least
+ * recently used ones are evicted when they exceed {@link #MAX_CACHE_BYTES} and all of them when
+ * the system runs low on memory. They are rendered on a background thread, until one is ready,
+ * {@link #obtain(Context, int, float, boolean)} returns null and the arc has to be drawn
+ * directly. A size whose atlas alone exceeds the cache is never rendered. Must only be used from
+ * the main thread.
+ */
+final class ArcSpriteAtlas {
+
+    /**
+     * The difference in degrees between the sweep angles of two sprites.
+     */
+    static final int SWEEP_STEP = 5;
+    /**
+     * The transparent pixels around every sprite.
+     */
+    static final int CELL_PADDING = 1;
+    private static final int SPRITE_COUNT = 360 / SWEEP_STEP + 1;
+    private static final int COLUMNS = (int) Math.ceil(Math.sqrt(SPRITE_COUNT));
+    private static final int ROWS = (SPRITE_COUNT + COLUMNS - 1) / COLUMNS;
+    /**
+     * The bytes all cached atlases may take together.
+     */
+    static final int MAX_CACHE_BYTES = 8 * 1024 * 1024;
+    /**
+     * The cached atlases by {@link #getKey(int, float, boolean)}, a primitive key so that looking
+     * one up does not allocate.
+     */
+    private static final LongSparseArray<ArcSpriteAtlas> sCache = new LongSparseArray<>();
+    private static final LongSparseArray<RenderTask> sRendering = new LongSparseArray<>();
+    private static int sCacheBytes;
+    private static int sUseCount;
+    private static final ComponentCallbacks2 sTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) {
+                evictAll();
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            // sizes are in pixels, nothing to do
+        }
+
+        @Override
+        public void onLowMemory() {
+            evictAll();
+        }
+    };
+    private static boolean sTrimCallbacksRegistered;
+    /**
+     * Incremented whenever the cache is cleared, so that an atlas that was still being rendered
+     * is dropped instead of being cached.
+     */
+    private static int sGeneration;
+    private final Bitmap mBitmap;
+    private final int mSpriteSize;
+    private final int mCellSize;
+    private boolean mEvicted;
+    private int mLastUse;
+
+    private ArcSpriteAtlas(int spriteSize, float strokeWidth, boolean roundedStroke) {
+        mSpriteSize = spriteSize;
+        mCellSize = spriteSize + 2 * CELL_PADDING;
+        mBitmap = Bitmap.createBitmap(COLUMNS * mCellSize, ROWS * mCellSize,
+                Bitmap.Config.ALPHA_8);
+
+        final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeCap(roundedStroke ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+        final Canvas canvas = new Canvas(mBitmap);
+        final RectF oval = new RectF();
+        final float inset = strokeWidth / 2;
+        // the first sprite has a sweep of 0 and stays empty
+        for (int i = 1; i < SPRITE_COUNT; i++) {
+            final int left = (i % COLUMNS) * mCellSize + CELL_PADDING;
+            final int top = (i / COLUMNS) * mCellSize + CELL_PADDING;
+            oval.set(left + inset, top + inset, left + spriteSize - inset, top + spriteSize - inset);
+            canvas.drawArc(oval, 0, i * SWEEP_STEP, false, paint);
+        }
+    }
+
+    /**
+     * Returns the bytes the atlas for sprites of the given size takes.
+     *
+     * @param spriteSize the width and height of a single sprite in pixels
+     * @return the size of the atlas in bytes
+     */
+    static long getByteCount(int spriteSize) {
+        // one byte per pixel
+        final long cellSize = spriteSize + 2 * CELL_PADDING;
+        return COLUMNS * cellSize * ROWS * cellSize;
+    }
+
+    /**
+     * Returns whether the atlas for sprites of the given size fits into the cache. One that does
+     * not would be evicted right away and rendered over and over again.
+     *
+     * @param spriteSize the width and height of a single sprite in pixels
+     * @return whether the atlas fits into the cache
+     */
+    static boolean fitsCache(int spriteSize) {
+        return spriteSize > 0 && getByteCount(spriteSize) <= MAX_CACHE_BYTES;
+    }
+
+    private static long getKey(int spriteSize, float strokeWidth, boolean roundedStroke) {
+        // the size is small enough to fit the cache, so it does not overlap the stroke
+        return (long) spriteSize << 33
+                | (Float.floatToIntBits(strokeWidth) & 0xffffffffL) << 1
+                | (roundedStroke ? 1 : 0);
+    }
+
+    /**
+     * Returns the shared atlas for the given parameters. If it is not cached, starts rendering it
+     * on a background thread and returns null, the atlas is available from one of the next calls.
+     * Always returns null if the atlas does not fit into the cache, see {@link #fitsCache(int)}.
+     *
+     * @param context       the context to register for memory pressure callbacks with
+     * @param spriteSize    the width and height of a single sprite in pixels, i.e. the diameter
+     *                      of the arc including the stroke
+     * @param strokeWidth   the width of the arc's stroke
+     * @param roundedStroke whether the arc's stroke has rounded ends
+     * @return the atlas or null if it is not rendered yet or does not fit into the cache
+     */
+    @Nullable
+    static ArcSpriteAtlas obtain(@NonNull Context context, int spriteSize, float strokeWidth,
+                                 boolean roundedStroke) {
+        if (!sTrimCallbacksRegistered) {
+            context.getApplicationContext().registerComponentCallbacks(sTrimCallbacks);
+            sTrimCallbacksRegistered = true;
+        }
+
+        if (!fitsCache(spriteSize)) {
+            return null;
+        }
+
+        final long key = getKey(spriteSize, strokeWidth, roundedStroke);
+        final ArcSpriteAtlas atlas = sCache.get(key);
+        if (atlas != null) {
+            atlas.mLastUse = ++sUseCount;
+        } else if (sRendering.get(key) == null) {
+            // a few megabytes at high densities, too slow for the frame that needs it
+            final RenderTask task = new RenderTask(key, spriteSize, strokeWidth, roundedStroke);
+            sRendering.put(key, task);
+            task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        }
+
+        return atlas;
+    }
+
+    private static void put(long key, @NonNull ArcSpriteAtlas atlas) {
+        atlas.mLastUse = ++sUseCount;
+        sCache.put(key, atlas);
+        sCacheBytes += atlas.mBitmap.getByteCount();
+        // the new atlas fits on its own, so it is never the one evicted
+        while (sCacheBytes > MAX_CACHE_BYTES) {
+            int leastRecent = 0;
+            for (int i = 1, size = sCache.size(); i < size; i++) {
+                if (sCache.valueAt(i).mLastUse < sCache.valueAt(leastRecent).mLastUse) {
+                    leastRecent = i;
+                }
+            }
+            final ArcSpriteAtlas evicted = sCache.valueAt(leastRecent);
+            evicted.mEvicted = true;
+            sCacheBytes -= evicted.mBitmap.getByteCount();
+            sCache.removeAt(leastRecent);
+        }
+    }
+
+    /**
+     * Removes all atlases from the cache. Drawables that still use one drop it the next time they
+     * draw, see {@link #isEvicted()}.
+     */
+    static void evictAll() {
+        sGeneration++;
+        for (int i = 0, size = sCache.size(); i < size; i++) {
+            sCache.valueAt(i).mEvicted = true;
+        }
+        sCache.clear();
+        sCacheBytes = 0;
+    }
+
+    /**
+     * Returns whether the atlas was removed from the cache. Holders should drop it, so that its
+     * memory can be reclaimed, and obtain a new one.
+     *
+     * @return whether the atlas was removed from the cache
+     */
+    boolean isEvicted() {
+        return mEvicted;
+    }
+
+    /**
+     * Returns the size of a single sprite.
+     *
+     * @return the width and height of a sprite in pixels
+     */
+    int getSpriteSize() {
+        return mSpriteSize;
+    }
+
+    /**
+     * Writes the area of the sprite for the sweep angle into the given rect.
+     *
+     * @param sweepAngle the sweep angle of the arc, rounded down to the closest sprite
+     * @param out        the rect to write the sprite's area into
+     */
+    void getSpriteBounds(float sweepAngle, @NonNull Rect out) {
+        final int index = Math.max(0, Math.min((int) (sweepAngle / SWEEP_STEP), SPRITE_COUNT - 1));
+        final int left = (index % COLUMNS) * mCellSize + CELL_PADDING;
+        final int top = (index / COLUMNS) * mCellSize + CELL_PADDING;
+        out.set(left, top, left + mSpriteSize, top + mSpriteSize);
+    }
+
+    /**
+     * Draws the sprite for the arc into the destination, rotated to the arc's start angle.
+     *
+     * @param canvas     the canvas to draw into
+     * @param startAngle the start angle of the arc
+     * @param sweepAngle the sweep angle of the arc
+     * @param dst        the area to draw the sprite into, centered on the arc
+     * @param spriteRect a rect to use for the sprite's area, to avoid allocating
+     * @param paint      the paint to blit with, its color is the color of the arc
+     */
+    void draw(@NonNull Canvas canvas, float startAngle, float sweepAngle, @NonNull RectF dst,
+              @NonNull Rect spriteRect, @NonNull Paint paint) {
+        getSpriteBounds(sweepAngle, spriteRect);
+        final int saveCount = canvas.save();
+        canvas.rotate(startAngle, dst.centerX(), dst.centerY());
+        canvas.drawBitmap(mBitmap, spriteRect, dst, paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    private static final class RenderTask extends AsyncTask<Void, Void, ArcSpriteAtlas> {
+
+        private final long mKey;
+        private final int mSpriteSize;
+        private final float mStrokeWidth;
+        private final boolean mRoundedStroke;
+        private final int mGeneration;
+
+        RenderTask(long key, int spriteSize, float strokeWidth,
+                   boolean roundedStroke) {
+            mKey = key;
+            mSpriteSize = spriteSize;
+            mStrokeWidth = strokeWidth;
+            mRoundedStroke = roundedStroke;
+            mGeneration = sGeneration;
+        }
+
+        @Override
+        protected ArcSpriteAtlas doInBackground(Void... params) {
+            return new ArcSpriteAtlas(mSpriteSize, mStrokeWidth, mRoundedStroke);
+        }
+
+        @Override
+        protected void onPostExecute(ArcSpriteAtlas atlas) {
+            sRendering.remove(mKey);
+            if (mGeneration == sGeneration) {
+                put(mKey, atlas);
+            }
+        }
+    }
+}
@@ -16,38 +16,44 @@
 
 package ch.berta.fabio.fabprogress;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.ValueAnimator;
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.view.animation.FastOutSlowInInterpolator;
 import android.util.AttributeSet;
-import android.util.TypedValue;
 import android.view.MotionEvent;
-import android.view.animation.DecelerateInterpolator;
-import android.view.animation.LinearInterpolator;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+import ch.berta.fabio.fabprogress.core.FrameTrace;
 
 /**
  * Provides a {@link FloatingActionButton} that allows to display an indeterminate progress circle
  * around it self to indicate a running process. Once the process finished the user can start the
  * final animation that makes the circle determinant.
  * <p/>
- * Subclass of {@link FloatingActionButton}.
+ * Subclass of {@link FloatingActionButton}. The circle itself is drawn by a
+ * {@link ProgressArcDrawable}, which is driven by the shared {@link FrameClock}.
  */
 public class FabProgress extends FloatingActionButton {
 
@@ -56,26 +62,23 @@ public class FabProgress extends FloatingActionButton {
     private static final int SIZE_NORMAL = 0;
 
     private static final String STATE_SUPER = "STATE_SUPER";
-    private static final String STATE_ANIM = "STATE_ANIM";
-    private static final String STATE_COMPLETE = "STATE_COMPLETE";
+    private static final String STATE_PROGRESS = "STATE_PROGRESS";
+    private static final String STATE_PLAY_TIME = "STATE_PLAY_TIME";
+    private static final String STATE_PROGRESS_VALUE = "STATE_PROGRESS_VALUE";
+    private static final String STATE_COMPLETE_START = "STATE_COMPLETE_START";
+    private static final String STATE_SAVED_AT = "STATE_SAVED_AT";
     private static final int NO_ANIM = 0;
     private static final int ANIM_SHOWING = 1;
     private static final int FINAL_ANIM_SHOWING = 2;
 
-    private static final int MINIMUM_SWEEP_ANGLE = 20;
-    private static final int MAXIMUM_SWEEP_ANGLE = 300;
-    private static final int ROTATE_ANIMATOR_DURATION = 2000;
-    private static final int SWEEP_ANIM_DURATION = 1000;
-    private static final int COMPLETE_ANIM_DURATION = SWEEP_ANIM_DURATION * 2;
-    private static final int COMPLETE_ROTATE_DURATION = COMPLETE_ANIM_DURATION * 6;
     private static final int REUSABLE_RESET_DELAY = 2000;
-    private static final int ICON_CHANGE_ANIM_DURATION = 50;
-    private static final DecelerateInterpolator DECELERATE_INTERPOLATOR = new DecelerateInterpolator();
+    private static final int ICON_CROSSFADE_DURATION = 100;
+    private static final long TIME_UNSET = -1;
+    private static final long NANOS_PER_MILLI = 1000000;
     private static final FastOutSlowInInterpolator FAST_OUT_SLOW_IN_INTERPOLATOR = new FastOutSlowInInterpolator();
-    private static final LinearInterpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
-    private final RectF mArcBounds = new RectF();
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
     private final Rect mShadowPadding = new Rect();
-    private final Paint mPaint = new Paint();
+    private final Rect mVisibleRect = new Rect();
     private int mAnimState;
     private boolean mIsComplete;
     private Drawable mFabIcon;
@@ -86,22 +89,87 @@ public class FabProgress extends FloatingActionButton {
     private int mArcColor;
     private int mArcWidth;
     private boolean mUseRoundedStroke;
+    private boolean mUseSpriteAtlas;
+    @DrawableRes
+    private int mCompleteIconRes;
+    private boolean mCompleteIconWarmedUp;
     private Drawable mCompleteIcon;
     private boolean mIsReusable;
-    private ValueAnimator mRotateAnim;
-    private ValueAnimator mGrowAnim;
-    private ValueAnimator mShrinkAnim;
-    private ValueAnimator mCompleteAnim;
-    private float mCurrentSweepAngle;
-    private float mCurrentRotationAngleOffset;
-    private float mCurrentRotationAngle;
-    private boolean mAnimationIsPlaying;
-    private boolean mIsGrowing;
-    private boolean mShowCompleteAnimOnNextCycle;
+    private boolean mCompleteImmediately;
+    private long mCompleteDuration;
+    private int mFrameRatePolicy;
+    private boolean mUseRenderThread;
+    private boolean mBodyLayerEnabled = true;
+    /**
+     * The button without the arc, i.e. background, icon and pre-Lollipop shadow, drawn once and
+     * blitted on every frame of the arc.
+     */
+    private Bitmap mBodyLayer;
+    private Canvas mBodyLayerCanvas;
+    private boolean mBodyLayerDirty = true;
+    private boolean mDrawingBodyLayer;
+    private final Object mArcDrawableLock = new Object();
+    /**
+     * Created on first use, see {@link #ensureArcDrawable()}.
+     */
+    private volatile ProgressArcDrawable mArcDrawable;
+    private final Runnable mAttachArcDrawableRunnable = new Runnable() {
+        @Override
+        public void run() {
+            attachArcDrawable();
+        }
+    };
+    private boolean mIsAttached;
     private ProgressFinalAnimationListener mProgressFinalAnimationListener;
+    private ColorStateList mAccentTint;
+    private ColorStateList mArcTint;
+    private boolean mIsFading;
+    private boolean mFadeReverse;
+    /**
+     * Shown as the image while the icons crossfade, created on the first icon change.
+     */
+    private IconCrossfadeDrawable mIconCrossfade;
+    /**
+     * Blends the background towards the tint it changes to, drawn over the background while the
+     * icons crossfade.
+     */
+    private Paint mTintOverlayPaint;
+    private final RectF mBodyBounds = new RectF();
+    private long mFadeStartTime = TIME_UNSET;
+    private final FrameClock.OnFrameListener mFadeFrameListener = new FrameClock.OnFrameListener() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            doFadeFrame(frameTimeNanos);
+        }
+    };
+    private boolean mResetPending;
+    private ProgressStateStore mBoundStore;
+    private long mBoundItemId;
+    private final Runnable mResetRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mResetPending = false;
+            resetProgress();
+        }
+    };
+    /**
+     * Gets called on every traversal of the window, which is when the view might have scrolled
+     * on- or off-screen. While the view is off-screen, it does not invalidate itself and therefore
+     * does not cause any traversals.
+     */
+    private final ViewTreeObserver.OnPreDrawListener mOnPreDrawListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    updateArcVisibility();
+                    return true;
+                }
+            };
 
     public FabProgress(@NonNull Context context) {
         super(context);
+
+        init(context, null, 0);
     }
 
     public FabProgress(@NonNull Context context, AttributeSet attrs) {
@@ -116,60 +184,58 @@ public class FabProgress extends FloatingActionButton {
         init(context, attrs, defStyleAttr);
     }
 
-    private void init(@NonNull Context context, @NonNull AttributeSet attrs, int defStyleAttr) {
-        mArcWidth = getResources().getDimensionPixelSize(R.dimen.fp_progress_arc_stroke_width);
+    /**
+     * Only reads the attributes, everything the progress needs is created on first use. Most
+     * buttons never show a progress, so they should inflate as fast as a plain
+     * {@link FloatingActionButton}.
+     */
+    private void init(@NonNull Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         mFabIcon = getDrawable();
-        mAccentColor = fetchAccentColor();
 
+        int fabSize;
         TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.FabProgress, defStyleAttr, 0);
         try {
             mArcColor = attr.getColor(R.styleable.FabProgress_fp_arcColor,
                     ContextCompat.getColor(context, R.color.green_500));
             mUseRoundedStroke = attr.getBoolean(R.styleable.FabProgress_fp_roundedStroke, false);
-            mCompleteIcon = attr.getDrawable(R.styleable.FabProgress_fp_finalIcon);
-            if (mCompleteIcon == null) {
-                mCompleteIcon = ContextCompat.getDrawable(getContext(), R.drawable.ic_done_white_24dp);
-            }
+            mUseSpriteAtlas = attr.getBoolean(R.styleable.FabProgress_fp_spriteAtlas, false);
+            mCompleteIconRes = attr.getResourceId(R.styleable.FabProgress_fp_finalIcon,
+                    R.drawable.ic_done_white_24dp);
             mIsReusable = attr.getBoolean(R.styleable.FabProgress_fp_reusable, false);
+            mCompleteImmediately = attr.getBoolean(R.styleable.FabProgress_fp_completeImmediately,
+                    false);
+            mCompleteDuration = attr.getInt(R.styleable.FabProgress_fp_completeDuration,
+                    (int) ArcTimeline.COMPLETE_DURATION);
+            mFrameRatePolicy = attr.getInt(R.styleable.FabProgress_fp_frameRatePolicy,
+                    ProgressArcDrawable.FRAME_RATE_FULL);
+            mUseRenderThread = attr.getBoolean(R.styleable.FabProgress_fp_renderThread, false);
+            fabSize = attr.getInt(R.styleable.FabProgress_fabSize, SIZE_NORMAL);
         } finally {
             attr.recycle();
         }
 
         if (!Utils.isRunningLollipopAndHigher()) {
-            setFakeShadowPadding(context, attrs, defStyleAttr);
+            setFakeShadowPadding(fabSize);
         }
-
-        setupPaint();
-        setupAnimations();
     }
 
     /**
-     * We are using private resources here in order to get the fab size. This is hacky but the
-     * alternative would be that the user needs to specify the fab size two times in the XML.
+     * Calculates the space the shadow drawable takes up. The fab size is read together with our
+     * own attributes, from the {@code fabSize} attribute of the design support library that the
+     * {@code FabProgress} styleable references, so that it does not need to be specified twice.
      * TODO: only needed as long as we support api <21, because of the space the shadow drawable takes up
      *
-     * @param context      the context to obtain the style attributes
-     * @param attrs        the attribute set
-     * @param defStyleAttr the style attr
-     */
-    @SuppressLint("PrivateResource")
-    private void setFakeShadowPadding(@NonNull Context context, @NonNull AttributeSet attrs,
-                                      int defStyleAttr) {
-        TypedArray attrFab = context.obtainStyledAttributes(attrs, R.styleable.FloatingActionButton,
-                defStyleAttr, 0);
-        try {
-            final Resources res = getResources();
-            int size = attrFab.getInt(R.styleable.FloatingActionButton_fabSize, SIZE_NORMAL);
-            if (size == SIZE_MINI) {
-                mFabSize = res.getDimensionPixelSize(R.dimen.fp_fab_size_mini);
-            } else {
-                mFabSize = res.getDimensionPixelSize(R.dimen.fp_fab_size_normal);
-            }
-        } finally {
-            attrFab.recycle();
+     * @param fabSize the value of the {@code fabSize} attribute
+     */
+    private void setFakeShadowPadding(int fabSize) {
+        final Resources res = getResources();
+        if (fabSize == SIZE_MINI) {
+            mFabSize = res.getDimensionPixelSize(R.dimen.fp_fab_size_mini);
+        } else {
+            mFabSize = res.getDimensionPixelSize(R.dimen.fp_fab_size_normal);
         }
 
-        final int maxContentSize = (int) getResources().getDimension(R.dimen.fp_fab_content_size);
+        final int maxContentSize = (int) res.getDimension(R.dimen.fp_fab_content_size);
         final int contentPadding = (mFabSize - maxContentSize) / 2;
         mShadowPadding.left = getPaddingLeft() - contentPadding;
         mShadowPadding.top = getPaddingTop() - contentPadding;
@@ -177,311 +243,453 @@ public class FabProgress extends FloatingActionButton {
         mShadowPadding.bottom = getPaddingBottom() - contentPadding;
     }
 
-    private int fetchAccentColor() {
-        final TypedValue value = new TypedValue();
-        getContext().getTheme().resolveAttribute(R.attr.colorAccent, value, true);
-        return value.data;
-    }
+    /**
+     * Resolves the colors the first time they are needed. The accent color per theme and the
+     * tints are shared through the process-wide {@link ResourceCache}.
+     */
+    private void ensureColors() {
+        if (mAccentTint != null) {
+            return;
+        }
 
-    private void setupPaint() {
-        mPaint.setAntiAlias(true);
-        mPaint.setStyle(Paint.Style.STROKE);
-        mPaint.setStrokeWidth(mArcWidth);
-        mPaint.setStrokeCap(mUseRoundedStroke ? Paint.Cap.ROUND : Paint.Cap.BUTT);
-        mPaint.setColor(mArcColor);
+        mAccentColor = ResourceCache.getAccentColor(getContext());
+        mAccentTint = ResourceCache.getTint(mAccentColor);
+        mArcTint = ResourceCache.getTint(mArcColor);
     }
 
-    private void setupAnimations() {
-        setupRotateAnimation();
-        setupGrowAnimation();
-        setupShrinkAnimation();
-        setupCompleteAnimation();
-    }
+    /**
+     * Returns the arc drawable, creating it on first use. Can be called from any thread, because
+     * {@link #setProgress(float)} can be the first call and is allowed to come from a worker.
+     * The drawable is hooked up to the view on the main thread.
+     *
+     * @return the arc drawable
+     */
+    @NonNull
+    private ProgressArcDrawable ensureArcDrawable() {
+        ProgressArcDrawable arcDrawable = mArcDrawable;
+        if (arcDrawable != null) {
+            return arcDrawable;
+        }
 
-    private void setupRotateAnimation() {
-        mRotateAnim = ValueAnimator.ofFloat(0f, 360f);
-        mRotateAnim.setInterpolator(LINEAR_INTERPOLATOR);
-        mRotateAnim.setDuration(ROTATE_ANIMATOR_DURATION);
-        mRotateAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float angle = getAnimatedFraction(animation) * 360f;
-                updateCurrentRotationAngle(angle);
+        synchronized (mArcDrawableLock) {
+            arcDrawable = mArcDrawable;
+            if (arcDrawable == null) {
+                arcDrawable = createArcDrawable();
+                mArcDrawable = arcDrawable;
+                if (Looper.myLooper() == Looper.getMainLooper()) {
+                    attachArcDrawable();
+                } else {
+                    // posted before any progress update of the drawable, so it runs first
+                    MAIN_HANDLER.post(mAttachArcDrawableRunnable);
+                }
             }
-        });
-        mRotateAnim.setRepeatCount(ValueAnimator.INFINITE);
-        mRotateAnim.setRepeatMode(ValueAnimator.RESTART);
-    }
+        }
 
-    private void updateCurrentRotationAngle(float currentRotationAngle) {
-        mCurrentRotationAngle = currentRotationAngle;
-        invalidate();
+        return arcDrawable;
     }
 
-    private void setupGrowAnimation() {
-        mGrowAnim = ValueAnimator.ofFloat(MINIMUM_SWEEP_ANGLE, MAXIMUM_SWEEP_ANGLE);
-        mGrowAnim.setInterpolator(DECELERATE_INTERPOLATOR);
-        mGrowAnim.setDuration(SWEEP_ANIM_DURATION);
-        mGrowAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+    @NonNull
+    private ProgressArcDrawable createArcDrawable() {
+        mArcWidth = getResources().getDimensionPixelSize(R.dimen.fp_progress_arc_stroke_width);
+        final ProgressArcDrawable arcDrawable = new ProgressArcDrawable(getContext());
+        arcDrawable.setArcColor(mArcColor);
+        arcDrawable.setStrokeWidth(mArcWidth);
+        arcDrawable.setRoundedStroke(mUseRoundedStroke);
+        arcDrawable.setSpriteAtlasEnabled(mUseSpriteAtlas);
+        arcDrawable.setCompleteImmediately(mCompleteImmediately);
+        arcDrawable.setCompleteDuration(mCompleteDuration);
+        arcDrawable.setFrameRatePolicy(mFrameRatePolicy);
+        arcDrawable.setRenderThreadEnabled(mUseRenderThread);
+        arcDrawable.setFinalAnimationListener(new ProgressFinalAnimationListener() {
             @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float animatedFraction = getAnimatedFraction(animation);
-                float angle = MINIMUM_SWEEP_ANGLE + animatedFraction * (MAXIMUM_SWEEP_ANGLE - MINIMUM_SWEEP_ANGLE);
-                updateCurrentSweepAngle(angle);
+            public void onProgressFinalAnimationComplete() {
+                mAnimState = NO_ANIM;
+                onArcFinalAnimationComplete();
             }
         });
-        mGrowAnim.addListener(new Animator.AnimatorListener() {
-            boolean cancelled;
+        // not visible until attached and shown
+        arcDrawable.setVisible(false, false);
 
-            @Override
-            public void onAnimationStart(Animator animation) {
-                cancelled = false;
-                mIsGrowing = true;
-            }
+        return arcDrawable;
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (!cancelled) {
-                    setShrinking();
-                    mShrinkAnim.start();
-                }
-            }
+    private void attachArcDrawable() {
+        mArcDrawable.setCallback(this);
+        updateArcDrawableBounds();
+        updateArcVisibility();
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                cancelled = true;
-            }
+    private void onArcFinalAnimationComplete() {
+        mIsComplete = true;
+        changeIcon(true, false);
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
+    /**
+     * Changes the icon and the background tint. When animated, the icons crossfade and the
+     * background blends towards the new tint inside the draw pass, driven by the shared
+     * {@link FrameClock}. No view property changes, so the elevation shadow and the outline stay
+     * as they are, and the icon and the tint are committed once at the end. Only preallocated
+     * listeners, drawables and tints are used, so a reusable button can cycle any number of
+     * times without allocating.
+     *
+     * @param animate whether to crossfade or to swap the icon immediately
+     * @param reverse whether to go back to the original icon or to show the complete icon
+     */
+    private void changeIcon(boolean animate, boolean reverse) {
+        if (!animate) {
+            showIcon(reverse);
+            return;
+        }
 
-            }
-        });
+        ensureColors();
+        ensureCompleteIcon();
+        if (mIconCrossfade == null) {
+            mIconCrossfade = new IconCrossfadeDrawable();
+            mTintOverlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        } else if (mIsFading) {
+            // fade from where the running fade ends, never from the crossfade itself
+            commitIcon();
+        }
+        mIconCrossfade.setIcons(getDrawable(), reverse ? mFabIcon : mCompleteIcon);
+        mTintOverlayPaint.setColor(reverse ? mAccentColor : mArcColor);
+        mTintOverlayPaint.setAlpha(0);
+        setImageDrawable(mIconCrossfade);
+
+        mIsFading = true;
+        final ProgressStatsRecorder recorder = getStatsRecorder();
+        if (recorder != null) {
+            recorder.recordIconFadeStarted();
+        }
+        mFadeReverse = reverse;
+        // start time gets set on the first frame
+        mFadeStartTime = TIME_UNSET;
+        FrameClock.getInstance().addListener(mFadeFrameListener);
     }
 
-    private void setShrinking() {
-        mIsGrowing = false;
-        mCurrentRotationAngleOffset = mCurrentRotationAngleOffset + (360 - MAXIMUM_SWEEP_ANGLE);
+    private void showIcon(boolean reverse) {
+        ensureColors();
+        if (reverse) {
+            setImageDrawable(mFabIcon);
+            setBackgroundTintList(mAccentTint);
+        } else {
+            ensureCompleteIcon();
+            setImageDrawable(mCompleteIcon);
+            setBackgroundTintList(mArcTint);
+        }
     }
 
-    private void setupShrinkAnimation() {
-        mShrinkAnim = ValueAnimator.ofFloat(MAXIMUM_SWEEP_ANGLE, MINIMUM_SWEEP_ANGLE);
-        mShrinkAnim.setInterpolator(DECELERATE_INTERPOLATOR);
-        mShrinkAnim.setDuration(SWEEP_ANIM_DURATION);
-        mShrinkAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float animatedFraction = getAnimatedFraction(animation);
-                updateCurrentSweepAngle(MAXIMUM_SWEEP_ANGLE -
-                        animatedFraction * (MAXIMUM_SWEEP_ANGLE - MINIMUM_SWEEP_ANGLE));
-            }
-        });
-        mShrinkAnim.addListener(new Animator.AnimatorListener() {
-            boolean cancelled;
+    private void ensureCompleteIcon() {
+        if (mCompleteIcon == null) {
+            // usually warmed up in the background when the progress started
+            mCompleteIcon = ResourceCache.getDrawable(getContext(), mCompleteIconRes);
+        }
+    }
 
-            @Override
-            public void onAnimationStart(Animator animation) {
-                cancelled = false;
-            }
+    /**
+     * Advances the icon fade to the given frame.
+     *
+     * @param frameTimeNanos the vsync time of the frame in {@link System#nanoTime()} base
+     */
+    void doFadeFrame(long frameTimeNanos) {
+        if (!mIsFading) {
+            return;
+        }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (!cancelled) {
-                    setGrowing();
-                    if (mShowCompleteAnimOnNextCycle) {
-                        mShowCompleteAnimOnNextCycle = false;
-                        mCompleteAnim.start();
-                    } else {
-                        mGrowAnim.start();
-                    }
-                }
-            }
+        if (mFadeStartTime == TIME_UNSET) {
+            mFadeStartTime = frameTimeNanos;
+        }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                cancelled = true;
-            }
+        final boolean isStatic = mArcDrawable != null
+                && mArcDrawable.getFrameRate() == ProgressArcDrawable.FRAME_RATE_STATIC;
+        final float fraction = isStatic ? 1f : Math.min((float) (frameTimeNanos - mFadeStartTime)
+                / (ICON_CROSSFADE_DURATION * NANOS_PER_MILLI), 1f);
+        final float interpolated = FAST_OUT_SLOW_IN_INTERPOLATOR.getInterpolation(fraction);
+        final ProgressTraceRecorder traceRecorder = getTraceRecorder();
+        if (traceRecorder != null) {
+            traceRecorder.recordFrame(frameTimeNanos, FrameTrace.PHASE_ICON_FADE, 0f,
+                    interpolated);
+        }
+        if (fraction < 1f) {
+            mTintOverlayPaint.setAlpha(Math.round(interpolated * 255));
+            // invalidates the view through the image drawable
+            mIconCrossfade.setFraction(interpolated);
+            return;
+        }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
+        commitIcon();
+        if (!mFadeReverse) {
+            if (mProgressFinalAnimationListener != null) {
+                mProgressFinalAnimationListener.onProgressFinalAnimationComplete();
+            }
 
+            if (mIsReusable) {
+                mResetPending = true;
+                postDelayed(mResetRunnable, REUSABLE_RESET_DELAY);
             }
-        });
+        }
     }
 
-    private void setGrowing() {
-        mIsGrowing = true;
-        mCurrentRotationAngleOffset += MINIMUM_SWEEP_ANGLE;
+    /**
+     * Ends the crossfade and shows the icon and background it faded to.
+     */
+    private void commitIcon() {
+        FrameClock.getInstance().removeListener(mFadeFrameListener);
+        mIsFading = false;
+        recordIconFadeEnded();
+
+        showIcon(mFadeReverse);
+        // do not hold on to the icons, e.g. when the original one gets replaced
+        mIconCrossfade.setIcons(null, null);
     }
 
-    private void setupCompleteAnimation() {
-        mCompleteAnim = ValueAnimator.ofFloat(MAXIMUM_SWEEP_ANGLE, MINIMUM_SWEEP_ANGLE);
-        mCompleteAnim.setInterpolator(DECELERATE_INTERPOLATOR);
-        mCompleteAnim.setDuration(COMPLETE_ANIM_DURATION);
-        mCompleteAnim.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                float animatedFraction = getAnimatedFraction(animation);
-                float angle = MINIMUM_SWEEP_ANGLE + animatedFraction * 360;
-                updateCurrentSweepAngle(angle);
-            }
-        });
-        mCompleteAnim.addListener(new Animator.AnimatorListener() {
-            boolean cancelled;
-
-            @Override
-            public void onAnimationStart(Animator animation) {
-                cancelled = false;
-                mIsGrowing = true;
-                mRotateAnim.setInterpolator(DECELERATE_INTERPOLATOR);
-                mRotateAnim.setDuration(COMPLETE_ROTATE_DURATION);
-            }
+    /**
+     * Returns whether the icon is currently fading.
+     *
+     * @return whether the icon is currently fading
+     */
+    boolean isIconFading() {
+        return mIsFading;
+    }
 
-            @Override
-            public void onAnimationEnd(Animator animation) {
-                if (!cancelled) {
-                    stopProgress();
-                }
+    private void recordIconFadeEnded() {
+        final ProgressStatsRecorder recorder = getStatsRecorder();
+        if (recorder != null) {
+            recorder.recordIconFadeEnded();
+        }
+    }
 
-                mCompleteAnim.removeListener(this);
-                onArcFinalAnimationComplete();
-            }
+    @Nullable
+    private ProgressStatsRecorder getStatsRecorder() {
+        return mArcDrawable != null ? mArcDrawable.getStatsRecorder() : null;
+    }
 
-            @Override
-            public void onAnimationCancel(Animator animation) {
-                cancelled = true;
-            }
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+
+        mIsAttached = true;
+        getViewTreeObserver().addOnPreDrawListener(mOnPreDrawListener);
+        updateArcVisibility();
+        if (mResetPending) {
+            postDelayed(mResetRunnable, REUSABLE_RESET_DELAY);
+        }
+    }
 
-            @Override
-            public void onAnimationRepeat(Animator animation) {
+    /**
+     * Removes everything that could outlive the view and keep its context alive: the frame clock
+     * subscriptions of the arc and of a running icon fade and a pending reset.
+     */
+    @Override
+    protected void onDetachedFromWindow() {
+        getViewTreeObserver().removeOnPreDrawListener(mOnPreDrawListener);
+        mIsAttached = false;
+        updateArcVisibility();
+        removeCallbacks(mResetRunnable);
+        if (mIsFading) {
+            endFade();
+        }
+        releaseBodyLayer();
 
-            }
-        });
+        super.onDetachedFromWindow();
     }
 
-    private float getAnimatedFraction(@NonNull ValueAnimator animator) {
-        float fraction = ((float) animator.getCurrentPlayTime()) / animator.getDuration();
-        fraction = Math.min(fraction, 1f);
-        fraction = animator.getInterpolator().getInterpolation(fraction);
-        return fraction;
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+
+        updateArcVisibility();
     }
 
-    private void updateCurrentSweepAngle(float currentSweepAngle) {
-        mCurrentSweepAngle = currentSweepAngle;
-        invalidate();
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+
+        updateArcVisibility();
     }
 
-    private void resetArcProperties() {
-        mCurrentSweepAngle = 0;
-        mCurrentRotationAngle = 0;
-        mCurrentRotationAngleOffset = 0;
+    /**
+     * Lets the arc drawable know whether it is actually visible to the user. The drawable pauses
+     * its animation while it is not.
+     * <p/>
+     * Might be called from the super constructor, before any fields are initialised. This is fine
+     * because the arc drawable does not exist yet at that point. It is only created when the
+     * progress is used the first time.
+     */
+    private void updateArcVisibility() {
+        if (mArcDrawable == null) {
+            return;
+        }
+
+        final boolean visible = mIsAttached && getWindowVisibility() == VISIBLE && isShown()
+                && getGlobalVisibleRect(mVisibleRect);
+        mArcDrawable.setVisible(visible, false);
     }
 
-    private void stopAnimators() {
-        mRotateAnim.cancel();
-        mGrowAnim.cancel();
-        mShrinkAnim.cancel();
-        mCompleteAnim.cancel();
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return (who != null && who == mArcDrawable) || super.verifyDrawable(who);
     }
 
-    private void onArcFinalAnimationComplete() {
-        mIsComplete = true;
-        fadeOut(true, false);
-    }
-
-    private void fadeOut(boolean animate, final boolean reverse) {
-        if (animate) {
-            animate()
-                    .setDuration(ICON_CHANGE_ANIM_DURATION)
-                    .alpha(0)
-                    .scaleX(0)
-                    .scaleY(0)
-                    .setInterpolator(FAST_OUT_SLOW_IN_INTERPOLATOR)
-                    .setListener(new AnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            super.onAnimationEnd(animation);
-
-                            if (reverse) {
-                                setImageDrawable(mFabIcon);
-                                setBackgroundTintList(ColorStateList.valueOf(mAccentColor));
-                            } else {
-                                setImageDrawable(mCompleteIcon);
-                                setBackgroundTintList(ColorStateList.valueOf(mArcColor));
-                            }
-
-                            fadeIn(reverse);
-                        }
-                    })
-                    .start();
-        } else if (reverse) {
-            setImageDrawable(mFabIcon);
-            setBackgroundTintList(ColorStateList.valueOf(mAccentColor));
+    @Override
+    public void invalidateDrawable(@NonNull Drawable drawable) {
+        if (drawable != null && drawable == mArcDrawable) {
+            // only invalidate the part of the arc that changed
+            invalidate(mArcDrawable.getArcDirtyBounds());
         } else {
-            setImageDrawable(mCompleteIcon);
-            setBackgroundTintList(ColorStateList.valueOf(mArcColor));
-        }
-    }
-
-    private void fadeIn(final boolean reverse) {
-        animate()
-                .setDuration(ICON_CHANGE_ANIM_DURATION)
-                .alpha(1)
-                .scaleX(1f)
-                .scaleY(1f)
-                .setInterpolator(FAST_OUT_SLOW_IN_INTERPOLATOR)
-                .setListener(new AnimatorListenerAdapter() {
-                    @Override
-                    public void onAnimationEnd(Animator animation) {
-                        super.onAnimationEnd(animation);
-
-                        if (!reverse) {
-                            if (mProgressFinalAnimationListener != null) {
-                                mProgressFinalAnimationListener.onProgressFinalAnimationComplete();
-                            }
-
-                            if (mIsReusable) {
-                                postDelayed(new Runnable() {
-                                    @Override
-                                    public void run() {
-                                        resetProgress();
-                                    }
-                                }, REUSABLE_RESET_DELAY);
-                            }
-                        }
-                    }
-                })
-                .start();
+            // the icon, the background or its ripple changed
+            mBodyLayerDirty = true;
+            super.invalidateDrawable(drawable);
+        }
+    }
+
+    /**
+     * Ends a running icon fade immediately and shows the icon and background it fades to, without
+     * calling any of the fade's callbacks. If the fade was the one after the final animation and
+     * the view is reusable, the reset gets scheduled for when the view is attached again.
+     */
+    private void endFade() {
+        commitIcon();
+        if (!mFadeReverse && mIsReusable) {
+            mResetPending = true;
+        }
     }
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        if (Utils.isRunningLollipopAndHigher()) {
+            mBodyBounds.set(0, 0, w, h);
+        } else {
+            mBodyBounds.set(mShadowPadding.left, mShadowPadding.top,
+                    mShadowPadding.left + mFabSize, mShadowPadding.top + mFabSize);
+        }
+
+        mBodyLayerDirty = true;
+        updateArcDrawableBounds();
+    }
 
+    private void updateArcDrawableBounds() {
+        if (mArcDrawable == null) {
+            return;
+        }
+
+        // the arc is centered on the edge of the fab, the drawable's bounds include the stroke
+        final int strokeOutset = mArcWidth / 2;
         if (Utils.isRunningLollipopAndHigher()) {
-            mArcBounds.left = 0;
-            mArcBounds.top = 0;
-            mArcBounds.right = w;
-            mArcBounds.bottom = h;
+            mArcDrawable.setBounds(-strokeOutset, -strokeOutset, getWidth() + strokeOutset,
+                    getHeight() + strokeOutset);
         } else {
-            mArcBounds.left = mShadowPadding.left;
-            mArcBounds.top = mShadowPadding.top;
-            mArcBounds.right = mShadowPadding.left + mFabSize;
-            mArcBounds.bottom = mShadowPadding.bottom + mFabSize;
+            mArcDrawable.setBounds(mShadowPadding.left - strokeOutset,
+                    mShadowPadding.top - strokeOutset,
+                    mShadowPadding.left + mFabSize + strokeOutset,
+                    mShadowPadding.bottom + mFabSize + strokeOutset);
         }
     }
 
+    /**
+     * Draws the button body from its layer and the arc on top while the arc animates in a
+     * software drawn view, so that a frame of the arc only rasterizes the arc. Otherwise draws
+     * the view as usual.
+     */
+    @Override
+    public void draw(Canvas canvas) {
+        final ProgressArcDrawable arcDrawable = mArcDrawable;
+        if (!shouldUseBodyLayer(arcDrawable)) {
+            releaseBodyLayer();
+            super.draw(canvas);
+            return;
+        }
+
+        final boolean measure = arcDrawable.getStatsRecorder() != null
+                || arcDrawable.getTraceRecorder() != null;
+        final long start = measure ? System.nanoTime() : 0;
+        if (mBodyLayerDirty) {
+            updateBodyLayer();
+        }
+        canvas.drawBitmap(mBodyLayer, 0, 0, null);
+        arcDrawable.drawArc(canvas);
+        if (measure) {
+            arcDrawable.recordDraw(System.nanoTime() - start);
+        }
+    }
+
+    private boolean shouldUseBodyLayer(@Nullable ProgressArcDrawable arcDrawable) {
+        // hardware accelerated, the display list already caches the body and a bitmap would
+        // freeze the ripple animations of the render thread
+        return mBodyLayerEnabled && !isHardwareAccelerated() && arcDrawable != null
+                && arcDrawable.isRunning() && getWidth() > 0 && getHeight() > 0;
+    }
+
+    private void updateBodyLayer() {
+        if (mBodyLayer == null || mBodyLayer.getWidth() != getWidth()
+                || mBodyLayer.getHeight() != getHeight()) {
+            mBodyLayer = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+            mBodyLayerCanvas = new Canvas(mBodyLayer);
+        } else {
+            mBodyLayer.eraseColor(Color.TRANSPARENT);
+        }
+
+        mDrawingBodyLayer = true;
+        super.draw(mBodyLayerCanvas);
+        mDrawingBodyLayer = false;
+        mBodyLayerDirty = false;
+    }
+
+    private void releaseBodyLayer() {
+        mBodyLayer = null;
+        mBodyLayerCanvas = null;
+        mBodyLayerDirty = true;
+    }
+
+    /**
+     * Returns whether the body of the button is currently drawn from its layer.
+     *
+     * @return whether the body layer is in use
+     */
+    boolean isBodyLayerValid() {
+        return mBodyLayer != null && !mBodyLayerDirty;
+    }
+
+    /**
+     * Marks the body layer as outdated, every invalidation of the whole view means that something
+     * other than the arc changed.
+     */
+    @Override
+    public void invalidate() {
+        mBodyLayerDirty = true;
+        super.invalidate();
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        mBodyLayerDirty = true;
+    }
+
     @Override
     protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+        if (mIsFading) {
+            // on top of the background, below the icons
+            canvas.drawOval(mBodyBounds, mTintOverlayPaint);
+        }
 
-        float startAngle = mCurrentRotationAngle - mCurrentRotationAngleOffset;
-        float sweepAngle = mCurrentSweepAngle;
-        if (!mIsGrowing) {
-            startAngle = startAngle + (360 - sweepAngle);
+        final ProgressArcDrawable arcDrawable = mArcDrawable;
+        if (arcDrawable == null || mDrawingBodyLayer) {
+            super.onDraw(canvas);
+            return;
         }
 
-        canvas.drawArc(mArcBounds, startAngle, sweepAngle, false, mPaint);
+        if (arcDrawable.getStatsRecorder() == null && arcDrawable.getTraceRecorder() == null) {
+            super.onDraw(canvas);
+            arcDrawable.drawArc(canvas);
+            return;
+        }
+
+        // measure the whole draw, not only the arc
+        final long start = System.nanoTime();
+        super.onDraw(canvas);
+        arcDrawable.drawArc(canvas);
+        arcDrawable.recordDraw(System.nanoTime() - start);
     }
 
     @Override
@@ -490,35 +698,52 @@ public class FabProgress extends FloatingActionButton {
         return mIsComplete || super.onTouchEvent(event);
     }
 
+    /**
+     * Saves the timeline of the progress circle, i.e. its phase, play time and a started or
+     * pending final animation, so that a view recreated after a configuration change continues
+     * where this one was instead of starting over.
+     */
     @Override
     protected Parcelable onSaveInstanceState() {
+        final ProgressState progressState = new ProgressState();
+        saveProgressState(progressState);
+
         Bundle bundle = new Bundle();
         bundle.putParcelable(STATE_SUPER, super.onSaveInstanceState());
-        bundle.putBoolean(STATE_COMPLETE, mIsComplete);
-        bundle.putInt(STATE_ANIM, mAnimState);
+        bundle.putInt(STATE_PROGRESS, progressState.state);
+        bundle.putLong(STATE_PLAY_TIME, progressState.playTime);
+        bundle.putFloat(STATE_PROGRESS_VALUE, progressState.progress);
+        bundle.putLong(STATE_COMPLETE_START, progressState.completeStartPlayTime);
+        bundle.putLong(STATE_SAVED_AT, SystemClock.elapsedRealtime());
 
         return bundle;
     }
 
+    /**
+     * Restores the timeline saved in {@link #onSaveInstanceState()}. The circle continues on its
+     * first frame from where it was plus the time the recreation took, as the work it shows went
+     * on in the meantime.
+     */
     @Override
     protected void onRestoreInstanceState(Parcelable state) {
         if (state instanceof Bundle) {
             Bundle bundle = (Bundle) state;
 
-            mIsComplete = bundle.getBoolean(STATE_COMPLETE);
-            if (mIsComplete) {
-                fadeOut(false, false);
-            } else {
-                mAnimState = bundle.getInt(STATE_ANIM);
-                switch (mAnimState) {
-                    case ANIM_SHOWING:
-                        startProgress();
-                        break;
-                    case FINAL_ANIM_SHOWING:
-                        startProgress();
-                        startProgressFinalAnimation();
-                        break;
-                }
+            final ProgressState progressState = new ProgressState();
+            progressState.state = bundle.getInt(STATE_PROGRESS, ProgressState.IDLE);
+            progressState.playTime = bundle.getLong(STATE_PLAY_TIME);
+            progressState.progress = bundle.getFloat(STATE_PROGRESS_VALUE, Float.NaN);
+            progressState.completeStartPlayTime = bundle.getLong(STATE_COMPLETE_START,
+                    ProgressState.COMPLETE_PENDING);
+            if (progressState.state == ProgressState.SPINNING
+                    || progressState.state == ProgressState.COMPLETING) {
+                // the clock might have been reset if the process was restarted in between
+                final long elapsed = SystemClock.elapsedRealtime() - bundle.getLong(STATE_SAVED_AT);
+                progressState.playTime += Math.max(elapsed, 0);
+            }
+            if (progressState.state != ProgressState.IDLE) {
+                // a recreated view is idle already, nothing to resolve or reset
+                restoreProgressState(progressState);
             }
 
             state = bundle.getParcelable(STATE_SUPER);
@@ -537,28 +762,145 @@ public class FabProgress extends FloatingActionButton {
     }
 
     /**
-     * Starts the indeterminate spinning progress circle.
+     * Sets whether the {@link FloatingActionButton} resets itself to its original icon and
+     * background after the final animation, so that it can be used again. Same as the
+     * {@code fp_reusable} attribute.
+     *
+     * @param reusable whether the view resets itself after the final animation
+     */
+    public void setReusable(boolean reusable) {
+        mIsReusable = reusable;
+    }
+
+    /**
+     * Sets whether the circle is blitted from a shared, pre-rendered sprite atlas instead of
+     * being drawn as an anti-aliased arc on every frame. Recommended for low-end and pre-Lollipop
+     * devices, where the view is drawn in software. Same as the {@code fp_spriteAtlas} attribute.
+     *
+     * @param enabled whether to draw the circle from a sprite atlas
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        mUseSpriteAtlas = enabled;
+        if (mArcDrawable != null) {
+            mArcDrawable.setSpriteAtlasEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets whether the final animation starts right away from where the circle currently is,
+     * instead of waiting for the current spin cycle to finish. Same as the
+     * {@code fp_completeImmediately} attribute.
+     *
+     * @param completeImmediately whether the final animation starts right away
+     */
+    public void setCompleteImmediately(boolean completeImmediately) {
+        mCompleteImmediately = completeImmediately;
+        if (mArcDrawable != null) {
+            mArcDrawable.setCompleteImmediately(completeImmediately);
+        }
+    }
+
+    /**
+     * Sets the duration of the final animation of the circle. Same as the
+     * {@code fp_completeDuration} attribute.
+     *
+     * @param duration the duration of the final animation in milliseconds
+     */
+    public void setCompleteDuration(long duration) {
+        if (mArcDrawable != null) {
+            mArcDrawable.setCompleteDuration(duration);
+        } else if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        mCompleteDuration = duration;
+    }
+
+    /**
+     * Sets whether the body of the button, i.e. background, icon and pre-Lollipop shadow, is
+     * drawn into a bitmap layer while the circle animates. Every frame of the circle then only
+     * blits the layer and draws the arc, the body is drawn again only when it changes. The layer
+     * takes the size of the view in memory and is released when the circle stops. Enabled by
+     * default, but only used while the view is not hardware accelerated, where the display list
+     * already caches the body and the ripples animate on the render thread.
+     *
+     * @param enabled whether to cache the body of the button while the circle animates
+     */
+    public void setBodyLayerEnabled(boolean enabled) {
+        mBodyLayerEnabled = enabled;
+        if (!enabled) {
+            releaseBodyLayer();
+        }
+        invalidate();
+    }
+
+    /**
+     * Sets whether the spinning circle is animated on the render thread, so that it does not
+     * stutter while the main thread is busy. Falls back to main thread frames below Android 7.1
+     * (API 25). Same as the {@code fp_renderThread} attribute.
+     *
+     * @param enabled whether to animate the spinning circle on the render thread
+     * @see ProgressArcDrawable#setRenderThreadEnabled(boolean)
+     */
+    public void setRenderThreadEnabled(boolean enabled) {
+        mUseRenderThread = enabled;
+        if (mArcDrawable != null) {
+            mArcDrawable.setRenderThreadEnabled(enabled);
+        }
+    }
+
+    /**
+     * Sets how often the circle is rendered: {@link ProgressArcDrawable#FRAME_RATE_FULL},
+     * {@link ProgressArcDrawable#FRAME_RATE_CAPPED}, {@link ProgressArcDrawable#FRAME_RATE_STATIC}
+     * or {@link ProgressArcDrawable#FRAME_RATE_AUTO}, which follows the battery saver and the
+     * animation settings of the system. A static circle also swaps the icons without fading.
+     * Same as the {@code fp_frameRatePolicy} attribute.
+     *
+     * @param policy the frame rate policy
+     */
+    public void setFrameRatePolicy(int policy) {
+        if (mArcDrawable != null) {
+            mArcDrawable.setFrameRatePolicy(policy);
+        } else if (policy < ProgressArcDrawable.FRAME_RATE_FULL
+                || policy > ProgressArcDrawable.FRAME_RATE_AUTO) {
+            throw new IllegalArgumentException("unknown frame rate policy " + policy);
+        }
+        mFrameRatePolicy = policy;
+    }
+
+    /**
+     * Starts the indeterminate spinning progress circle. Has no effect if the circle already
+     * spins or its final animation runs, so it is safe to call on every update of whatever the
+     * progress shows. If the circle was stopped since the last frame, it continues where it was
+     * instead of starting over.
      */
     public void startProgress() {
+        if (mAnimState == FINAL_ANIM_SHOWING && mArcDrawable != null
+                && mArcDrawable.isRunning()) {
+            // the final animation is kept, it completes as requested
+            return;
+        }
+
         mAnimState = ANIM_SHOWING;
 
-        mAnimationIsPlaying = true;
-        resetArcProperties();
-        mRotateAnim.start();
-        mGrowAnim.start();
-        invalidate();
+        ensureColors();
+        if (mCompleteIcon == null && !mCompleteIconWarmedUp) {
+            // the complete icon is shown at the earliest once the final animation is done
+            mCompleteIconWarmedUp = true;
+            ResourceCache.warmUp(getContext(), mCompleteIconRes);
+        }
+        ensureArcDrawable().start();
     }
 
     /**
-     * Stops the indeterminate spinning progress circle.
+     * Stops the indeterminate spinning progress circle. Has no effect if the circle is not
+     * running.
      */
     public void stopProgress() {
         mAnimState = NO_ANIM;
 
-        mAnimationIsPlaying = false;
-        stopAnimators();
-        resetArcProperties();
-        invalidate();
+        if (mArcDrawable != null) {
+            mArcDrawable.stop();
+        }
     }
 
     /**
@@ -569,19 +911,244 @@ public class FabProgress extends FloatingActionButton {
         mIsComplete = false;
 
         stopProgress();
-        setupAnimations();
-        fadeOut(true, true);
+        changeIcon(true, true);
     }
 
     /**
-     * Starts the final animation, i.e. makes the spinning progress circle determinate.
+     * Shows a determinate progress circle instead of the indeterminate one. Unlike the other
+     * methods, this can be called from any thread and at any rate, e.g. directly from a worker
+     * reporting upload progress. The latest value is picked up once per frame.
+     * <p/>
+     * Call {@link #startProgressFinalAnimation()} on the main thread once the work is done.
+     *
+     * @param progress the progress between 0 and 1
+     */
+    public void setProgress(float progress) {
+        ensureArcDrawable().setProgress(progress);
+    }
+
+    /**
+     * Starts the final animation, i.e. makes the spinning progress circle determinate. Has no
+     * effect if the circle is not running or the final animation already started.
      */
     public void startProgressFinalAnimation() {
-        if (!mAnimationIsPlaying || mCompleteAnim.isRunning()) {
+        if (mArcDrawable == null || !mArcDrawable.isRunning()) {
             return;
         }
 
         mAnimState = FINAL_ANIM_SHOWING;
-        mShowCompleteAnimOnNextCycle = true;
+        mArcDrawable.startFinalAnimation();
+    }
+
+    /**
+     * Sets the store and the item this view is bound to, see
+     * {@link ProgressStateStore#bind(FabProgress, long)}.
+     *
+     * @param store  the store the view is bound to or null if it is unbound
+     * @param itemId the id of the item the view shows
+     */
+    void setBoundItem(@Nullable ProgressStateStore store, long itemId) {
+        mBoundStore = store;
+        mBoundItemId = itemId;
+    }
+
+    @Nullable
+    ProgressStateStore getBoundStore() {
+        return mBoundStore;
+    }
+
+    long getBoundItemId() {
+        return mBoundItemId;
+    }
+
+    /**
+     * Writes what the view currently shows and how far its timeline got into the given state.
+     * A running final animation is saved as {@link ProgressState#COMPLETING}.
+     *
+     * @param out the state to write into
+     */
+    void saveProgressState(@NonNull ProgressState out) {
+        out.reset();
+        if (mIsComplete || (mIsFading && !mFadeReverse)) {
+            out.state = ProgressState.COMPLETE;
+            return;
+        }
+
+        final ProgressArcDrawable arcDrawable = mArcDrawable;
+        if (arcDrawable == null) {
+            return;
+        }
+
+        // a progress set from another thread might not have reached the drawable yet
+        final float progress = arcDrawable.getDeterminateProgress();
+        if (!arcDrawable.isRunning() && Float.isNaN(progress)) {
+            return;
+        }
+
+        out.playTime = arcDrawable.getPlayTime();
+        out.progress = progress;
+        if (mAnimState == FINAL_ANIM_SHOWING) {
+            out.state = ProgressState.COMPLETING;
+            out.completeStartPlayTime = Math.max(arcDrawable.getCompleteStartPlayTime(),
+                    ProgressState.COMPLETE_PENDING);
+        } else {
+            out.state = Float.isNaN(out.progress)
+                    ? ProgressState.SPINNING
+                    : ProgressState.DETERMINATE;
+        }
+    }
+
+    /**
+     * Makes the view show the given state right away, without fading icons. Whatever the view
+     * showed before is dropped, which is what a recycled list item needs.
+     *
+     * @param state the state to show
+     */
+    void restoreProgressState(@NonNull ProgressState state) {
+        clearProgressState();
+
+        switch (state.state) {
+            case ProgressState.SPINNING:
+                startProgress(state.playTime);
+                break;
+            case ProgressState.DETERMINATE:
+                showProgress(state.progress);
+                break;
+            case ProgressState.COMPLETING:
+                if (Float.isNaN(state.progress)) {
+                    startProgress(state.playTime);
+                } else {
+                    showProgress(state.progress);
+                }
+                mAnimState = FINAL_ANIM_SHOWING;
+                mArcDrawable.continueFinalAnimation(state.playTime, state.completeStartPlayTime);
+                break;
+            case ProgressState.COMPLETE:
+                mIsComplete = true;
+                showIcon(false);
+                break;
+        }
+    }
+
+    private void startProgress(long playTime) {
+        mAnimState = ANIM_SHOWING;
+        ensureColors();
+        ensureArcDrawable().start(playTime);
+    }
+
+    private void showProgress(float progress) {
+        mAnimState = ANIM_SHOWING;
+        ensureColors();
+        ensureArcDrawable().showProgress(progress);
+    }
+
+    /**
+     * Stops the circle, cancels a running fade or pending reset and shows the original icon if
+     * this view replaced it. An icon or a tint the app set, e.g. per list item, stays as it is.
+     */
+    private void clearProgressState() {
+        final boolean wasFading = mIsFading;
+        if (mIsFading) {
+            FrameClock.getInstance().removeListener(mFadeFrameListener);
+            mIsFading = false;
+            recordIconFadeEnded();
+            mIconCrossfade.setIcons(null, null);
+        }
+        if (mResetPending) {
+            mResetPending = false;
+            removeCallbacks(mResetRunnable);
+        }
+        stopProgress();
+        if (mArcDrawable != null) {
+            // whatever starts next belongs to another item
+            mArcDrawable.cancelResume();
+        }
+
+        if (mIsComplete || wasFading) {
+            mIsComplete = false;
+            showIcon(true);
+        }
+    }
+
+    /**
+     * Sets whether rendering stats are collected: the duration of {@code onDraw()}, rendered and
+     * skipped frames, invalidations and the time spent in each phase of the animation, including
+     * the icon fades. Collecting them does not allocate, so they can be left enabled in
+     * production builds. Disabling them discards the collected stats.
+     *
+     * @param enabled whether rendering stats are collected
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled) {
+            ensureArcDrawable().setStatsEnabled(true);
+        } else if (mArcDrawable != null) {
+            mArcDrawable.setStatsEnabled(false);
+        }
+    }
+
+    /**
+     * Copies the rendering stats collected so far into the given snapshot. Reuse the same
+     * snapshot to read the stats without allocating.
+     *
+     * @param out the snapshot to write the stats into
+     * @return false if stats are not enabled, in which case the snapshot is left untouched
+     */
+    public boolean getStats(@NonNull ProgressStats out) {
+        return mArcDrawable != null && mArcDrawable.getStats(out);
+    }
+
+    /**
+     * Clears the rendering stats collected so far.
+     */
+    public void resetStats() {
+        if (mArcDrawable != null) {
+            mArcDrawable.resetStats();
+        }
+    }
+
+    /**
+     * Sets the callback that receives the rendering stats about once per second while the circle
+     * is animating. Has no effect unless stats are enabled.
+     *
+     * @param listener the listener that receives the stats
+     */
+    public void setStatsListener(@Nullable ProgressStatsListener listener) {
+        if (listener != null) {
+            ensureArcDrawable().setStatsListener(listener);
+        } else if (mArcDrawable != null) {
+            mArcDrawable.setStatsListener(null);
+        }
+    }
+
+    /**
+     * Sets the recorder that traces every frame of the progress circle and of the icon fades into
+     * a ring buffer, including the duration of {@code onDraw()}. Flush it to a file with
+     * {@link ProgressTraceRecorder#flush(java.io.File)} to analyse stutters offline. A recorder
+     * can only trace one view at a time.
+     *
+     * @param recorder the recorder to write the frames to or null to stop tracing
+     * @throws IllegalStateException if the recorder already traces another view
+     */
+    public void setTraceRecorder(@Nullable ProgressTraceRecorder recorder) {
+        if (recorder != null) {
+            ensureArcDrawable().setTraceRecorder(recorder);
+        } else if (mArcDrawable != null) {
+            mArcDrawable.setTraceRecorder(null);
+        }
+    }
+
+    @Nullable
+    private ProgressTraceRecorder getTraceRecorder() {
+        return mArcDrawable != null ? mArcDrawable.getTraceRecorder() : null;
+    }
+
+    /**
+     * Returns the drawable that draws the progress circle.
+     *
+     * @return the drawable that draws the progress circle or null if the progress was not used yet
+     */
+    @Nullable
+    ProgressArcDrawable getArcDrawable() {
+        return mArcDrawable;
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Provides a process-wide frame clock driven by {@link Choreographer}. All subscribed listeners
+ * are called once per vsync with the same frame time, so every arc value of a frame is derived
+ * from one timestamp and only one frame callback is posted no matter how many listeners are
+ * subscribed.
+ * <p/>
+ * Must only be used from the main thread.
+ */
+class FrameClock implements Choreographer.FrameCallback {
+
+    private static FrameClock sInstance;
+    private final ArrayList<OnFrameListener> mListeners = new ArrayList<>();
+    /**
+     * The subscribed listeners for constant time lookups, the list keeps the dispatch order.
+     */
+    private final Set<OnFrameListener> mSubscribed =
+            Collections.newSetFromMap(new IdentityHashMap<OnFrameListener, Boolean>());
+    private boolean mFramePosted;
+    private boolean mDispatching;
+    private boolean mHasRemovedListeners;
+
+    private FrameClock() {
+        // use getInstance()
+    }
+
+    /**
+     * Returns the shared frame clock instance.
+     *
+     * @return the shared frame clock instance
+     */
+    static FrameClock getInstance() {
+        if (sInstance == null) {
+            sInstance = new FrameClock();
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Subscribes the listener to the frame clock. Adding an already subscribed listener has no
+     * effect.
+     *
+     * @param listener the listener to call on every frame
+     */
+    void addListener(@NonNull OnFrameListener listener) {
+        if (!mSubscribed.add(listener)) {
+            return;
+        }
+
+        mListeners.add(listener);
+        postFrame();
+    }
+
+    /**
+     * Unsubscribes the listener from the frame clock. It will not be called anymore, even if it is
+     * removed during the dispatch of a frame.
+     *
+     * @param listener the listener to remove
+     */
+    void removeListener(@NonNull OnFrameListener listener) {
+        if (!mSubscribed.remove(listener)) {
+            return;
+        }
+
+        final int index = mListeners.indexOf(listener);
+        if (mDispatching) {
+            // keep indices stable while dispatching, compact afterwards
+            mListeners.set(index, null);
+            mHasRemovedListeners = true;
+        } else {
+            mListeners.remove(index);
+        }
+    }
+
+    /**
+     * Returns whether the listener is currently subscribed to the frame clock.
+     *
+     * @param listener the listener to check
+     * @return whether the listener is currently subscribed
+     */
+    boolean hasListener(@NonNull OnFrameListener listener) {
+        return mSubscribed.contains(listener);
+    }
+
+    private void postFrame() {
+        if (!mFramePosted) {
+            mFramePosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFramePosted = false;
+
+        mDispatching = true;
+        // listeners added during the dispatch get called on the next frame
+        final int size = mListeners.size();
+        for (int i = 0; i < size; i++) {
+            final OnFrameListener listener = mListeners.get(i);
+            if (listener != null) {
+                listener.onFrame(frameTimeNanos);
+            }
+        }
+        mDispatching = false;
+
+        if (mHasRemovedListeners) {
+            mHasRemovedListeners = false;
+            for (int i = mListeners.size() - 1; i >= 0; i--) {
+                if (mListeners.get(i) == null) {
+                    mListeners.remove(i);
+                }
+            }
+        }
+
+        if (!mListeners.isEmpty()) {
+            postFrame();
+        }
+    }
+
+    /**
+     * Defines the callback that gets called on every frame of the {@link FrameClock}.
+     */
+    interface OnFrameListener {
+        /**
+         * Called once per frame while the listener is subscribed.
+         *
+         * @param frameTimeNanos the vsync time of the frame in {@link System#nanoTime()} base
+         */
+        void onFrame(long frameTimeNanos);
+    }
+}
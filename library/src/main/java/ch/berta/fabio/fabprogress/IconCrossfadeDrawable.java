@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Blends two icons inside the draw pass: the first one is drawn with the inverse alpha of the
+ * second one. Shown by {@link FabProgress} for the duration of an icon change only, so the view
+ * swaps its image drawable once at the start and once at the end, and every frame in between is
+ * a plain invalidation.
+ * <p/>
+ * The icons are not given this drawable as callback, setting their alpha while drawing does not
+ * cause further invalidations. They are mutated, so that their alpha never reaches other users of
+ * the same resource, and get back the alpha they had after every draw. The size is the one of
+ * the icon the fade ends on, so the view lays out at most once for a fade.
+ */
+final class IconCrossfadeDrawable extends Drawable {
+
+    private static final int OPAQUE = 255;
+    private Drawable mFrom;
+    private Drawable mTo;
+    private int mFromAlpha;
+    private int mToAlpha;
+    private float mFraction;
+    private int mAlpha = OPAQUE;
+
+    /**
+     * Sets the icons to blend and shows the first one.
+     *
+     * @param from the icon to fade out
+     * @param to   the icon to fade in
+     */
+    void setIcons(@Nullable Drawable from, @Nullable Drawable to) {
+        // mutating returns the same instance, the view keeps showing the icons afterwards
+        mFrom = from != null ? from.mutate() : null;
+        mTo = to != null ? to.mutate() : null;
+        mFromAlpha = getIconAlpha(mFrom);
+        mToAlpha = getIconAlpha(mTo);
+        mFraction = 0f;
+        updateIconBounds(getBounds());
+        invalidateSelf();
+    }
+
+    /**
+     * Sets how far the crossfade got.
+     *
+     * @param fraction 0 to only show the first icon, 1 to only show the second one
+     */
+    void setFraction(float fraction) {
+        if (fraction == mFraction) {
+            return;
+        }
+
+        mFraction = fraction;
+        invalidateSelf();
+    }
+
+    private static int getIconAlpha(@Nullable Drawable icon) {
+        // the alpha can only be read from KitKat on, older icons are opaque unless set otherwise
+        return icon != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? icon.getAlpha()
+                : OPAQUE;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        drawIcon(canvas, mFrom, mFromAlpha, 1f - mFraction);
+        drawIcon(canvas, mTo, mToAlpha, mFraction);
+    }
+
+    private void drawIcon(@NonNull Canvas canvas, @Nullable Drawable icon, int iconAlpha,
+                          float fraction) {
+        final int alpha = Math.round(fraction * iconAlpha * mAlpha / OPAQUE);
+        if (icon == null || alpha == 0) {
+            return;
+        }
+
+        icon.setAlpha(alpha);
+        icon.draw(canvas);
+        // the icons are shown on their own again afterwards
+        icon.setAlpha(iconAlpha);
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+
+        updateIconBounds(bounds);
+    }
+
+    private void updateIconBounds(@NonNull Rect bounds) {
+        if (mFrom != null) {
+            mFrom.setBounds(bounds);
+        }
+        if (mTo != null) {
+            mTo.setBounds(bounds);
+        }
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        final Drawable icon = mTo != null ? mTo : mFrom;
+        return icon != null ? icon.getIntrinsicWidth() : -1;
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        final Drawable icon = mTo != null ? mTo : mFrom;
+        return icon != null ? icon.getIntrinsicHeight() : -1;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mAlpha = alpha;
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        if (mFrom != null) {
+            mFrom.setColorFilter(colorFilter);
+        }
+        if (mTo != null) {
+            mTo.setColorFilter(colorFilter);
+        }
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
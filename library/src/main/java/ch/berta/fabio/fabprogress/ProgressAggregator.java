@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the progress of many concurrent subtasks, e.g. the chunks of an upload, into the
+ * determinate progress of a single {@link FabProgress}, and starts its final animation once all
+ * of them are finished.
+ * <p/>
+ * Every subtask is added with a weight, the amount of work it represents, and reports its
+ * progress through its own {@link Task}. The completed work is summed up in striped counters, so
+ * workers running in parallel do not contend on a single value. Call {@link #seal()} once all
+ * subtasks are added, the final animation starts when the aggregator is sealed and every
+ * subtask is finished.
+ * <p/>
+ * Can be used from any thread. Subtasks can be added after work started. The view never goes
+ * back though, it keeps the highest progress reported so far until the aggregated progress
+ * catches up again.
+ */
+public class ProgressAggregator {
+
+    /**
+     * The number of longs between two stripes, so that every stripe sits on its own cache line.
+     */
+    private static final int STRIPE_PADDING = 8;
+    private static final int MAX_STRIPES = 64;
+    /**
+     * The number of progress updates a subtask reports over its whole weight.
+     */
+    private static final long TASK_REPORT_STEPS = 100;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private final FabProgress mFabProgress;
+    private final AtomicLongArray mCompletedWork;
+    private final int mStripeMask;
+    private final AtomicLong mTotalWeight = new AtomicLong();
+    /**
+     * The number of unfinished subtasks plus one until the aggregator is sealed.
+     */
+    private final AtomicInteger mPendingTasks = new AtomicInteger(1);
+    private final AtomicBoolean mSealed = new AtomicBoolean();
+    /**
+     * The highest progress reported to the view so far, as float bits. The progress is never
+     * negative and non-negative floats order the same as their bits.
+     */
+    private final AtomicInteger mReportedProgress = new AtomicInteger();
+    private final Runnable mFinalAnimationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFabProgress.startProgressFinalAnimation();
+        }
+    };
+
+    /**
+     * Constructs a new {@link ProgressAggregator}.
+     *
+     * @param fabProgress the view to report the aggregated progress to
+     */
+    public ProgressAggregator(@NonNull FabProgress fabProgress) {
+        mFabProgress = fabProgress;
+
+        int stripes = 1;
+        final int processors = Runtime.getRuntime().availableProcessors();
+        while (stripes < processors && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        mStripeMask = stripes - 1;
+        mCompletedWork = new AtomicLongArray(stripes * STRIPE_PADDING);
+    }
+
+    /**
+     * Adds a subtask. The returned task is meant to be used by the worker that runs the subtask.
+     *
+     * @param weight the amount of work of the subtask relative to the other subtasks, e.g. its
+     *               size in bytes
+     * @return the task to report the progress of the subtask with
+     */
+    @NonNull
+    public Task addTask(long weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        if (mSealed.get()) {
+            throw new IllegalStateException("aggregator is already sealed");
+        }
+
+        mPendingTasks.incrementAndGet();
+        mTotalWeight.addAndGet(weight);
+        return new Task(weight);
+    }
+
+    /**
+     * Declares that all subtasks were added. The final animation starts as soon as all of them
+     * are finished, right away if they already are.
+     */
+    public void seal() {
+        if (mSealed.compareAndSet(false, true)) {
+            onTaskFinished();
+        }
+    }
+
+    /**
+     * Returns the aggregated progress of all subtasks added so far.
+     *
+     * @return the progress between 0 and 1
+     */
+    public float getProgress() {
+        final long totalWeight = mTotalWeight.get();
+        if (totalWeight == 0) {
+            return 0;
+        }
+
+        long completedWork = 0;
+        for (int i = 0, size = mCompletedWork.length(); i < size; i += STRIPE_PADDING) {
+            completedWork += mCompletedWork.get(i);
+        }
+
+        return Math.min((float) completedWork / totalWeight, 1f);
+    }
+
+    private void addCompletedWork(long work) {
+        final int stripe = (int) Thread.currentThread().getId() & mStripeMask;
+        mCompletedWork.addAndGet(stripe * STRIPE_PADDING, work);
+        reportProgress(getProgress());
+    }
+
+    private void reportProgress(float progress) {
+        final int bits = Float.floatToIntBits(progress);
+        int reported;
+        do {
+            reported = mReportedProgress.get();
+            if (bits <= reported) {
+                // a concurrent worker got further and reports that
+                return;
+            }
+        } while (!mReportedProgress.compareAndSet(reported, bits));
+
+        // a worker that raised the maximum in the meantime might have reported before this one,
+        // repeat until the view is left with the maximum
+        int set;
+        do {
+            set = mReportedProgress.get();
+            mFabProgress.setProgress(Float.intBitsToFloat(set));
+        } while (mReportedProgress.get() != set);
+    }
+
+    private void onTaskFinished() {
+        if (mPendingTasks.decrementAndGet() == 0) {
+            MAIN_HANDLER.post(mFinalAnimationRunnable);
+        }
+    }
+
+    /**
+     * Reports the progress of a single subtask. A task is meant to be used by one thread at a
+     * time, usually the worker running the subtask. It reports to the aggregator in batches.
+     */
+    public final class Task {
+
+        private final long mWeight;
+        private final long mReportWork;
+        private long mWork;
+        private long mReportedWork;
+        private boolean mIsFinished;
+
+        private Task(long weight) {
+            mWeight = weight;
+            mReportWork = Math.max(weight / TASK_REPORT_STEPS, 1);
+        }
+
+        /**
+         * Adds completed work to the subtask.
+         *
+         * @param work the amount of work completed, in the unit of the subtask's weight
+         */
+        public void advance(long work) {
+            setWork(mWork + work);
+        }
+
+        /**
+         * Sets the progress of the subtask.
+         *
+         * @param progress the progress between 0 and 1
+         */
+        public void setProgress(float progress) {
+            setWork((long) (Math.max(0f, Math.min(progress, 1f)) * mWeight));
+        }
+
+        private void setWork(long work) {
+            if (mIsFinished) {
+                return;
+            }
+
+            mWork = Math.max(0, Math.min(work, mWeight));
+            if (Math.abs(mWork - mReportedWork) >= mReportWork) {
+                report();
+            }
+        }
+
+        private void report() {
+            final long delta = mWork - mReportedWork;
+            mReportedWork = mWork;
+            if (delta != 0) {
+                addCompletedWork(delta);
+            }
+        }
+
+        /**
+         * Finishes the subtask, counting its whole weight as completed. Only the first call has an
+         * effect.
+         */
+        public void finish() {
+            if (mIsFinished) {
+                return;
+            }
+
+            mWork = mWeight;
+            report();
+            mIsFinished = true;
+            onTaskFinished();
+        }
+    }
+}
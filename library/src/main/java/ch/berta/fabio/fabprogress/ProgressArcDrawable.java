@@ -0,0 +1,1331 @@
+/*
+ * Copyright (c) 2015 Fabio Berta and Jorge Castillo Pérez
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Animatable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.ColorInt;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.graphics.drawable.DrawableCompat;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ch.berta.fabio.fabprogress.core.ArcFrame;
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+/**
+ * Provides a lightweight {@link Drawable} that draws the indeterminate progress circle and its
+ * final animation. It can be used on its own, e.g. as the image of an
+ * {@link android.widget.ImageView} or as a toolbar action icon, and is what {@link FabProgress}
+ * uses internally.
+ * <p/>
+ * The arc is drawn on the largest circle that fits inside the bounds, including the stroke. The
+ * animation is driven by the shared {@link FrameClock} and only runs while the drawable is
+ * running and visible. When it becomes invisible, it keeps its play time and continues from the
+ * same point once it is visible again.
+ * <p/>
+ * Besides the indeterminate circle, the drawable can show a determinate progress with
+ * {@link #setProgress(float)}.
+ * <p/>
+ * On low-end devices and in software rendering, {@link #setSpriteAtlasEnabled(boolean)} replaces
+ * the anti-aliased arc with a blit from a shared, pre-rendered sprite atlas.
+ * <p/>
+ * Rendering stats can be collected with {@link #setStatsEnabled(boolean)}. Collecting them does
+ * not allocate, so they can be left enabled in production builds.
+ * <p/>
+ * Must only be used from the main thread, except for {@link #setProgress(float)}, which can be
+ * called from any thread.
+ */
+public class ProgressArcDrawable extends Drawable implements Animatable {
+
+    /**
+     * Renders every frame of the display.
+     */
+    public static final int FRAME_RATE_FULL = 0;
+    /**
+     * Renders at most {@link #setCappedFrameRate(int)} frames per second.
+     */
+    public static final int FRAME_RATE_CAPPED = 1;
+    /**
+     * Does not spin: shows a still arc and completes without animating. A determinate progress
+     * is still updated whenever it changes.
+     */
+    public static final int FRAME_RATE_STATIC = 2;
+    /**
+     * Is {@link #FRAME_RATE_STATIC} when animations are turned off in the system settings,
+     * {@link #FRAME_RATE_CAPPED} while the battery saver is on and {@link #FRAME_RATE_FULL}
+     * otherwise. Follows changes of the settings while the circle runs.
+     */
+    public static final int FRAME_RATE_AUTO = 3;
+    public static final int DEFAULT_CAPPED_FRAME_RATE = 30;
+    private static final long TIME_UNSET = -1;
+    private static final long NANOS_PER_MILLI = 1000000;
+    private static final int NO_PROGRESS = Float.floatToIntBits(Float.NaN);
+    private static final long NANOS_PER_SECOND = 1000000000;
+    /**
+     * Vsyncs jitter, accept a frame slightly early rather than skipping it and waiting for the
+     * next one. Half a frame at 120 Hz.
+     */
+    private static final long FRAME_RATE_TOLERANCE_NANOS = 4000000;
+    /**
+     * The play time of the still arc of {@link #FRAME_RATE_STATIC}, halfway through growing.
+     */
+    private static final long STATIC_PLAY_TIME = ArcTimeline.SWEEP_DURATION / 2;
+    /**
+     * Nougat MR1, from which animated vector drawables run on the render thread.
+     */
+    private static final int RENDER_THREAD_MIN_SDK = 25;
+    /**
+     * The geometry of the animated vector in viewport units, it must match fp_arc_vector.
+     */
+    private static final float ANIMATED_ARC_VIEWPORT_SIZE = 58;
+    private static final float ANIMATED_ARC_RADIUS = 28;
+    private static final float ANIMATED_ARC_STROKE_WIDTH = 2;
+    /**
+     * How many pixels the scaled stroke of the animated vector may differ from the arc's stroke.
+     */
+    private static final float ANIMATED_ARC_STROKE_TOLERANCE = 0.5f;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private final Paint mPaint = new Paint();
+    private final RectF mArcBounds = new RectF();
+    private final ArcFrame mArcFrame = new ArcFrame();
+    private final RectF mDirtyArcBounds = new RectF();
+    private final RectF mLastArcBounds = new RectF();
+    private final RectF mDirtyBounds = new RectF();
+    private final Rect mDirtyRect = new Rect();
+    private final Context mAppContext;
+    private final RectF mSpriteBounds = new RectF();
+    private final Rect mSpriteRect = new Rect();
+    private boolean mSpriteAtlasEnabled;
+    private ArcSpriteAtlas mSpriteAtlas;
+    private final FrameClock.OnFrameListener mFrameListener = new FrameClock.OnFrameListener() {
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            doFrame(frameTimeNanos);
+        }
+    };
+    private final FrameClock.OnFrameListener mResumeExpiredListener =
+            new FrameClock.OnFrameListener() {
+                @Override
+                public void onFrame(long frameTimeNanos) {
+                    cancelResume();
+                }
+            };
+    private final AnimationConditions.OnChangedListener mConditionsListener =
+            new AnimationConditions.OnChangedListener() {
+                @Override
+                public void onAnimationConditionsChanged() {
+                    updateFrameRate();
+                }
+            };
+    /**
+     * The latest determinate progress as float bits, written from any thread and read once per
+     * frame on the main thread.
+     */
+    private final AtomicInteger mProgressBits = new AtomicInteger(NO_PROGRESS);
+    /**
+     * Whether the main thread picks up the latest progress, either from a pending message or, as
+     * long as the progress frames run, on the next frame. Ensures that there is at most one
+     * pending message no matter how often the progress is set, and none while the frames run.
+     */
+    private final AtomicBoolean mProgressUpdatePending = new AtomicBoolean();
+    private final Runnable mApplyProgressRunnable = new Runnable() {
+        @Override
+        public void run() {
+            applyProgress();
+        }
+    };
+    private float mInvalidatedStartAngle = Float.NaN;
+    private float mInvalidatedSweepAngle = Float.NaN;
+    private long mStartTime = TIME_UNSET;
+    private long mPlayTime;
+    private long mCompleteStartPlayTime = TIME_UNSET;
+    private boolean mShowCompleteAnimOnNextCycle;
+    /**
+     * The play time the spinning circle had when it was stopped, until the next frame.
+     */
+    private long mResumePlayTime = TIME_UNSET;
+    private boolean mCompleteImmediately;
+    private long mCompleteDuration = ArcTimeline.COMPLETE_DURATION;
+    private boolean mIsRunning;
+    private boolean mIsDeterminate;
+    private boolean mProgressChanged;
+    private float mDeterminateProgress = Float.NaN;
+    private boolean mFramesRunning;
+    private ProgressFinalAnimationListener mFinalAnimationListener;
+    private ProgressStatsRecorder mStatsRecorder;
+    private ProgressStatsListener mStatsListener;
+    private ProgressStats mListenerStats;
+    private ProgressTraceRecorder mTraceRecorder;
+    private int mFrameRatePolicy = FRAME_RATE_FULL;
+    private int mFrameRate = FRAME_RATE_FULL;
+    private long mCappedFrameIntervalNanos = NANOS_PER_SECOND / DEFAULT_CAPPED_FRAME_RATE;
+    private long mLastFrameTime = TIME_UNSET;
+    private boolean mWatchingConditions;
+    private boolean mRenderThreadEnabled;
+    /**
+     * The indeterminate timeline as an animated vector drawable, only created when it is used.
+     * Kept as a plain drawable so that the class does not reference it on older platforms.
+     */
+    private Drawable mAnimatedArc;
+    private boolean mAnimatedArcRunning;
+    private long mAnimatedArcStartTime;
+    private long mAnimatedArcStartPlayTime;
+    private float mAnimatedArcRotation;
+    private boolean mAnimatedArcFits;
+    private final ArcFrame mAnimatedArcFrame = new ArcFrame();
+    private final Rect mAnimatedArcBounds = new Rect();
+    private final Callback mAnimatedArcCallback = new Callback() {
+        @Override
+        public void invalidateDrawable(@NonNull Drawable who) {
+            invalidateSelf();
+        }
+
+        @Override
+        public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+            scheduleSelf(what, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+            unscheduleSelf(what);
+        }
+    };
+
+    public ProgressArcDrawable(@NonNull Context context) {
+        mAppContext = context.getApplicationContext();
+        mPaint.setAntiAlias(true);
+        // only used when blitting sprites
+        mPaint.setFilterBitmap(true);
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(context.getResources()
+                .getDimensionPixelSize(R.dimen.fp_progress_arc_stroke_width));
+        mPaint.setStrokeCap(Paint.Cap.BUTT);
+        mPaint.setColor(ContextCompat.getColor(context, R.color.green_500));
+    }
+
+    /**
+     * Sets the color of the arc.
+     *
+     * @param color the color of the arc
+     */
+    public void setArcColor(@ColorInt int color) {
+        mPaint.setColor(color);
+        if (mAnimatedArc != null) {
+            DrawableCompat.setTint(mAnimatedArc, color);
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Sets the width of the arc's stroke.
+     *
+     * @param width the width of the stroke in pixels
+     */
+    public void setStrokeWidth(float width) {
+        mPaint.setStrokeWidth(width);
+        mSpriteAtlas = null;
+        updateArcBounds(getBounds());
+        // the animated vector only stands in for a matching stroke
+        updateFrameSubscription();
+        invalidateAll();
+    }
+
+    /**
+     * Sets whether the arc's stroke has rounded ends.
+     *
+     * @param roundedStroke whether the stroke has rounded ends
+     */
+    public void setRoundedStroke(boolean roundedStroke) {
+        mPaint.setStrokeCap(roundedStroke ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+        mSpriteAtlas = null;
+        if (mAnimatedArc != null) {
+            // the cap is part of the vector, swap it on the next start
+            stopAnimatedArc();
+            mAnimatedArc = null;
+            updateFrameSubscription();
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Sets whether the arc is blitted from a pre-rendered sprite atlas instead of being drawn with
+     * an anti-aliased arc on every frame. This is a lot cheaper in software rendering, e.g. on
+     * low-end and pre-Lollipop devices, at the cost of sweep angles rounded down to
+     * {@value ArcSpriteAtlas#SWEEP_STEP} degrees and some memory for the atlas, which is shared
+     * by all drawables of the same size, stroke width and cap. The atlas is rendered on a
+     * background thread, the arc is drawn as usual until it is ready. A drawable so large that
+     * its atlas would not fit into the shared cache keeps drawing the arc as usual.
+     *
+     * @param enabled whether to draw from a sprite atlas
+     */
+    public void setSpriteAtlasEnabled(boolean enabled) {
+        mSpriteAtlasEnabled = enabled;
+        if (!enabled) {
+            mSpriteAtlas = null;
+        }
+        invalidateAll();
+    }
+
+    /**
+     * Sets the callback for when the final animation of the arc is complete.
+     *
+     * @param listener the listener that gets called when the final animation is complete
+     */
+    public void setFinalAnimationListener(@Nullable ProgressFinalAnimationListener listener) {
+        mFinalAnimationListener = listener;
+    }
+
+    /**
+     * Sets whether the final animation starts right away from where the arc currently is, instead
+     * of waiting for the current spin cycle to finish, which can take up to
+     * {@link ArcTimeline#CYCLE_DURATION}.
+     *
+     * @param completeImmediately whether the final animation starts right away
+     */
+    public void setCompleteImmediately(boolean completeImmediately) {
+        mCompleteImmediately = completeImmediately;
+    }
+
+    /**
+     * Sets the duration of the final animation, during which the arc grows to a full circle.
+     * Defaults to {@link ArcTimeline#COMPLETE_DURATION}.
+     *
+     * @param duration the duration of the final animation in milliseconds
+     */
+    public void setCompleteDuration(long duration) {
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+
+        mCompleteDuration = duration;
+    }
+
+    /**
+     * Sets whether the indeterminate circle is animated on the render thread, so that it keeps
+     * spinning smoothly while the main thread is busy. Only supported from Android 7.1 (API 25),
+     * below the circle falls back to main thread frames. Without hardware acceleration the vector
+     * animation itself runs on the main thread.
+     * <p/>
+     * The render thread animation follows the same timeline and takes over at the start of the
+     * next spin cycle. Its vector is scaled to the arc, so its stroke is a fourteenth of the
+     * arc's radius wide, the default stroke of the normal sized button. Any other stroke width
+     * keeps the circle on main thread frames. It does not honour a capped frame rate and it is not
+     * recorded by stats or traces. Determinate progress and the final animation always run on
+     * the main thread, they take over from where the render thread timeline is.
+     *
+     * @param enabled whether to animate the indeterminate circle on the render thread
+     */
+    public void setRenderThreadEnabled(boolean enabled) {
+        mRenderThreadEnabled = enabled;
+        updateFrameSubscription();
+    }
+
+    /**
+     * Returns whether the indeterminate circle is currently animated on the render thread.
+     *
+     * @return whether the render thread animates the circle
+     */
+    boolean isRenderThreadAnimating() {
+        return mAnimatedArcRunning;
+    }
+
+    /**
+     * Sets how often the circle is rendered, one of {@link #FRAME_RATE_FULL},
+     * {@link #FRAME_RATE_CAPPED}, {@link #FRAME_RATE_STATIC} or {@link #FRAME_RATE_AUTO}. Defaults
+     * to {@link #FRAME_RATE_FULL}.
+     *
+     * @param policy the frame rate policy
+     */
+    public void setFrameRatePolicy(int policy) {
+        if (policy < FRAME_RATE_FULL || policy > FRAME_RATE_AUTO) {
+            throw new IllegalArgumentException("unknown frame rate policy " + policy);
+        }
+
+        mFrameRatePolicy = policy;
+        updateFrameRate();
+    }
+
+    public int getFrameRatePolicy() {
+        return mFrameRatePolicy;
+    }
+
+    /**
+     * Sets the frame rate of {@link #FRAME_RATE_CAPPED}. Defaults to
+     * {@link #DEFAULT_CAPPED_FRAME_RATE}.
+     *
+     * @param framesPerSecond the maximum number of frames per second
+     */
+    public void setCappedFrameRate(int framesPerSecond) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("frame rate must be positive");
+        }
+
+        mCappedFrameIntervalNanos = NANOS_PER_SECOND / framesPerSecond;
+    }
+
+    /**
+     * Returns the frame rate the policy currently resolves to, i.e. never {@link #FRAME_RATE_AUTO}.
+     *
+     * @return the effective frame rate
+     */
+    int getFrameRate() {
+        return mFrameRate;
+    }
+
+    /**
+     * Returns whether the system settings need to be watched, i.e. while an
+     * {@link #FRAME_RATE_AUTO} circle runs and is visible. The shared watcher holds its listeners
+     * strongly, so a hidden drawable must not stay registered with it.
+     *
+     * @return whether the system settings need to be watched
+     */
+    private boolean shouldWatchConditions() {
+        return mFrameRatePolicy == FRAME_RATE_AUTO && mIsRunning && isVisible();
+    }
+
+    /**
+     * Resolves the policy, starts or stops watching the system settings for
+     * {@link #FRAME_RATE_AUTO} and applies the frame rate if it changed.
+     */
+    private void updateFrameRate() {
+        final boolean watch = shouldWatchConditions();
+        if (watch != mWatchingConditions) {
+            mWatchingConditions = watch;
+            final AnimationConditions conditions = AnimationConditions.getInstance(mAppContext);
+            if (watch) {
+                conditions.addListener(mConditionsListener);
+            } else {
+                conditions.removeListener(mConditionsListener);
+            }
+        }
+
+        final int frameRate;
+        if (mFrameRatePolicy != FRAME_RATE_AUTO) {
+            frameRate = mFrameRatePolicy;
+        } else if (!mWatchingConditions) {
+            // keep the last resolved rate until the circle runs and is visible again
+            frameRate = mFrameRate;
+        } else {
+            final AnimationConditions conditions = AnimationConditions.getInstance(mAppContext);
+            if (conditions.areAnimationsDisabled()) {
+                frameRate = FRAME_RATE_STATIC;
+            } else if (conditions.isPowerSaveMode()) {
+                frameRate = FRAME_RATE_CAPPED;
+            } else {
+                frameRate = FRAME_RATE_FULL;
+            }
+        }
+
+        if (frameRate != mFrameRate) {
+            mFrameRate = frameRate;
+            mLastFrameTime = TIME_UNSET;
+            updateFrameSubscription();
+        }
+    }
+
+    /**
+     * Sets whether rendering stats are collected. Disabling them discards the collected stats.
+     *
+     * @param enabled whether rendering stats are collected
+     */
+    public void setStatsEnabled(boolean enabled) {
+        if (enabled && mStatsRecorder == null) {
+            mStatsRecorder = new ProgressStatsRecorder();
+        } else if (!enabled) {
+            mStatsRecorder = null;
+        }
+    }
+
+    /**
+     * Returns whether rendering stats are collected.
+     *
+     * @return whether rendering stats are collected
+     */
+    public boolean isStatsEnabled() {
+        return mStatsRecorder != null;
+    }
+
+    /**
+     * Copies the rendering stats collected so far into the given snapshot. Reuse the same
+     * snapshot to read the stats without allocating.
+     *
+     * @param out the snapshot to write the stats into
+     * @return false if stats are not enabled, in which case the snapshot is left untouched
+     */
+    public boolean getStats(@NonNull ProgressStats out) {
+        if (mStatsRecorder == null) {
+            return false;
+        }
+
+        mStatsRecorder.getStats(out);
+        return true;
+    }
+
+    /**
+     * Clears the rendering stats collected so far.
+     */
+    public void resetStats() {
+        if (mStatsRecorder != null) {
+            mStatsRecorder.reset();
+        }
+    }
+
+    /**
+     * Sets the callback that receives the rendering stats about once per second while the circle
+     * is animating. Has no effect unless stats are enabled.
+     *
+     * @param listener the listener that receives the stats
+     */
+    public void setStatsListener(@Nullable ProgressStatsListener listener) {
+        mStatsListener = listener;
+        if (listener != null && mListenerStats == null) {
+            mListenerStats = new ProgressStats();
+        }
+    }
+
+    /**
+     * Returns the recorder of the rendering stats, if they are enabled.
+     *
+     * @return the recorder or null if stats are not enabled
+     */
+    @Nullable
+    ProgressStatsRecorder getStatsRecorder() {
+        return mStatsRecorder;
+    }
+
+    /**
+     * Sets the recorder that traces every frame of the circle for offline analysis. A recorder
+     * can only trace one drawable at a time.
+     *
+     * @param recorder the recorder to write the frames to or null to stop tracing
+     * @throws IllegalStateException if the recorder already traces another drawable
+     */
+    public void setTraceRecorder(@Nullable ProgressTraceRecorder recorder) {
+        if (recorder == mTraceRecorder) {
+            return;
+        }
+
+        if (recorder != null) {
+            recorder.attach(this);
+        }
+        if (mTraceRecorder != null) {
+            mTraceRecorder.detach(this);
+        }
+        mTraceRecorder = recorder;
+    }
+
+    /**
+     * Returns the recorder that traces the frames of the circle.
+     *
+     * @return the recorder or null if the frames are not traced
+     */
+    @Nullable
+    public ProgressTraceRecorder getTraceRecorder() {
+        return mTraceRecorder;
+    }
+
+    /**
+     * Starts the indeterminate spinning progress circle from the beginning. Has no effect if the
+     * circle already spins or its final animation runs, pending or not. If it was spinning and got
+     * stopped since the last frame, it continues where it was, as nothing of the stop was drawn
+     * yet.
+     */
+    @Override
+    public void start() {
+        if (mIsRunning && (!mIsDeterminate || isCompleting())) {
+            // starting over would make the arc jump or drop the final animation
+            return;
+        }
+
+        if (mResumePlayTime != TIME_UNSET) {
+            start(mResumePlayTime);
+            return;
+        }
+
+        restart();
+    }
+
+    private void restart() {
+        cancelResume();
+        mIsRunning = true;
+        mIsDeterminate = false;
+        clearProgress();
+        // a running render thread timeline restarts as well
+        stopAnimatedArc();
+        // start time gets set on the first frame
+        resetArcProperties();
+        updateFrameRate();
+        updateFrameSubscription();
+        invalidateSelf();
+    }
+
+    /**
+     * Stops the progress circle and hides the arc. Has no effect if the circle is not running.
+     */
+    @Override
+    public void stop() {
+        if (!mIsRunning) {
+            // a determinate progress might be on its way from another thread
+            clearProgress();
+            return;
+        }
+
+        if (!mIsDeterminate && !isCompleting()) {
+            // a start before the next frame continues from here
+            mResumePlayTime = getPlayTime();
+            FrameClock.getInstance().addListener(mResumeExpiredListener);
+        }
+        mIsRunning = false;
+        mIsDeterminate = false;
+        // the shared atlas can only be reclaimed once no stopped drawable holds on to it
+        mSpriteAtlas = null;
+        clearProgress();
+        updateFrameRate();
+        updateFrameSubscription();
+        resetArcProperties();
+        invalidateSelf();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    /**
+     * Starts the indeterminate spinning progress circle from the given play time, e.g. to continue
+     * the timeline of a recycled list item.
+     *
+     * @param playTime the play time in milliseconds to continue from
+     */
+    void start(long playTime) {
+        restart();
+        mPlayTime = Math.max(playTime, 0);
+        updateFrameSubscription();
+    }
+
+    /**
+     * Makes the next {@link #start()} start from the beginning even if the circle was only
+     * stopped since the last frame, e.g. because the view now shows another item.
+     */
+    void cancelResume() {
+        if (mResumePlayTime != TIME_UNSET) {
+            mResumePlayTime = TIME_UNSET;
+            FrameClock.getInstance().removeListener(mResumeExpiredListener);
+        }
+    }
+
+    private boolean isCompleting() {
+        return mCompleteStartPlayTime != TIME_UNSET || mShowCompleteAnimOnNextCycle;
+    }
+
+    /**
+     * Shows the determinate progress right away instead of on the main thread's next message,
+     * so that the final animation can be started immediately afterwards.
+     *
+     * @param progress the progress between 0 and 1
+     */
+    void showProgress(float progress) {
+        setProgress(progress);
+        applyProgress();
+    }
+
+    /**
+     * Returns the play time of the spinning circle, which keeps its value while the frames are
+     * paused.
+     *
+     * @return the play time in milliseconds
+     */
+    long getPlayTime() {
+        if (mAnimatedArcRunning) {
+            return mAnimatedArcStartPlayTime
+                    + (System.nanoTime() - mAnimatedArcStartTime) / NANOS_PER_MILLI;
+        }
+
+        return mPlayTime;
+    }
+
+    /**
+     * Returns the play time the final animation started at.
+     *
+     * @return the play time in milliseconds or a negative value if the final animation did not
+     * start yet
+     */
+    long getCompleteStartPlayTime() {
+        return mCompleteStartPlayTime;
+    }
+
+    /**
+     * Returns the latest determinate progress, including one that was set but not yet drawn.
+     *
+     * @return the determinate progress or NaN if the circle is indeterminate
+     */
+    float getDeterminateProgress() {
+        // cleared by start() and stop(), so it is only set while showing a determinate progress
+        final float progress = readProgress();
+        if (!Float.isNaN(progress)) {
+            return progress;
+        }
+
+        return mIsDeterminate ? mDeterminateProgress : Float.NaN;
+    }
+
+    /**
+     * Starts the final animation, i.e. makes the spinning progress circle determinate, once the
+     * current spin cycle is finished or, if {@link #setCompleteImmediately(boolean)} is set, on
+     * the next frame from where the arc is. A determinate progress always completes right away
+     * from where it is. Has no effect if the circle is not running or the final animation
+     * already started.
+     */
+    public void startFinalAnimation() {
+        if (!mIsRunning || isCompleting()) {
+            return;
+        }
+
+        if (mIsDeterminate) {
+            // there is no cycle to wait for, complete from the latest progress
+            final float progress = readProgress();
+            if (!Float.isNaN(progress)) {
+                mDeterminateProgress = progress;
+            } else if (Float.isNaN(mDeterminateProgress)) {
+                mDeterminateProgress = 0;
+            }
+            // the final animation takes over, a progress still on its way is dropped
+            clearProgress();
+            mPlayTime = 0;
+            mStartTime = TIME_UNSET;
+            mCompleteStartPlayTime = 0;
+            updateFrameSubscription();
+        } else if (mCompleteImmediately || mFrameRate == FRAME_RATE_STATIC) {
+            // hand over from the render thread first, its timeline becomes the play time
+            stopAnimatedArc();
+            // continue from the arc of the last frame, the complete timeline picks it up from there
+            mCompleteStartPlayTime = mPlayTime;
+            updateFrameSubscription();
+        } else {
+            mShowCompleteAnimOnNextCycle = true;
+            updateFrameSubscription();
+        }
+    }
+
+    /**
+     * Continues a final animation that already started at the given play time, e.g. in a view
+     * recreated after a configuration change. Starts the final animation as usual if the given
+     * play time is negative.
+     *
+     * @param playTime              the play time in milliseconds to continue from
+     * @param completeStartPlayTime the play time in milliseconds the final animation started at
+     */
+    void continueFinalAnimation(long playTime, long completeStartPlayTime) {
+        startFinalAnimation();
+        if (!mIsRunning || completeStartPlayTime < 0) {
+            return;
+        }
+
+        mShowCompleteAnimOnNextCycle = false;
+        mCompleteStartPlayTime = completeStartPlayTime;
+        mPlayTime = Math.max(playTime, completeStartPlayTime);
+        // re-anchored on the next frame
+        mStartTime = TIME_UNSET;
+        updateFrameSubscription();
+    }
+
+    /**
+     * Shows a determinate progress instead of the indeterminate circle. Can be called from any
+     * thread and as often as needed: the value is written into an atomic slot and picked up once
+     * per frame on the main thread, with at most one message pending on the main thread at any
+     * time.
+     * <p/>
+     * Calling {@link #start()} or {@link #stop()} goes back to the indeterminate circle. Has no
+     * effect while the final animation runs.
+     *
+     * @param progress the progress between 0 and 1
+     */
+    public void setProgress(float progress) {
+        mProgressBits.set(Float.floatToIntBits(Math.max(0f, Math.min(progress, 1f))));
+        if (mProgressUpdatePending.compareAndSet(false, true)) {
+            MAIN_HANDLER.post(mApplyProgressRunnable);
+        }
+    }
+
+    private float readProgress() {
+        return Float.intBitsToFloat(mProgressBits.get());
+    }
+
+    private void clearProgress() {
+        MAIN_HANDLER.removeCallbacks(mApplyProgressRunnable);
+        mProgressBits.set(NO_PROGRESS);
+        mProgressChanged = false;
+        // the next progress posts a new update, otherwise it would wait for a frame that never
+        // comes
+        releaseProgressUpdate();
+    }
+
+    /**
+     * Clears the pending flag, so that the next progress posts a new update. A progress that was
+     * set while the flag was still set did not post, it is posted here instead of being lost.
+     */
+    private void releaseProgressUpdate() {
+        mProgressUpdatePending.set(false);
+        if (!Float.isNaN(readProgress()) && mProgressUpdatePending.compareAndSet(false, true)) {
+            MAIN_HANDLER.post(mApplyProgressRunnable);
+        }
+    }
+
+    /**
+     * Switches to determinate mode if needed and makes sure a frame picks up the latest progress.
+     */
+    private void applyProgress() {
+        if (Float.isNaN(readProgress())) {
+            // stopped or restarted in the meantime
+            releaseProgressUpdate();
+            return;
+        }
+
+        if (isCompleting()) {
+            // the final animation already started, there is no frame to pick the progress up
+            clearProgress();
+            return;
+        }
+
+        if (!mIsRunning || !mIsDeterminate) {
+            mIsRunning = true;
+            mIsDeterminate = true;
+            resetArcProperties();
+            updateFrameRate();
+        }
+
+        mProgressChanged = true;
+        updateFrameSubscription();
+    }
+
+    @Override
+    public boolean setVisible(boolean visible, boolean restart) {
+        final boolean changed = super.setVisible(visible, restart);
+        if (visible && restart && mIsRunning) {
+            resetArcProperties();
+        }
+        updateFrameSubscription();
+
+        return changed;
+    }
+
+    /**
+     * Subscribes to the {@link FrameClock} while running and visible and unsubscribes otherwise,
+     * the same goes for watching the system settings. When the frames stop, the play time is
+     * kept, so that the arc continues from the same point once they run again.
+     */
+    private void updateFrameSubscription() {
+        if (shouldWatchConditions() != mWatchingConditions) {
+            // stops watching the system settings while hidden and catches up once visible again
+            updateFrameRate();
+        }
+
+        // a determinate progress only needs frames when it changed or when it completes, a static
+        // circle only when it completes
+        final boolean completing = isCompleting();
+        final boolean animating = mIsDeterminate
+                ? mProgressChanged
+                : mFrameRate != FRAME_RATE_STATIC;
+        // the vector timeline starts at the beginning of a cycle, the frames run until then
+        final boolean renderThread = canUseRenderThread()
+                && (mAnimatedArcRunning || mPlayTime % ArcTimeline.CYCLE_DURATION == 0);
+        if (renderThread) {
+            startAnimatedArc();
+        } else {
+            stopAnimatedArc();
+        }
+
+        final boolean shouldRun = mIsRunning && isVisible() && (animating || completing)
+                && !renderThread;
+        if (!shouldRun && !renderThread && mIsRunning && !mIsDeterminate && !completing) {
+            showStaticArc();
+        }
+        if (shouldRun == mFramesRunning) {
+            return;
+        }
+
+        mFramesRunning = shouldRun;
+        if (shouldRun) {
+            FrameClock.getInstance().addListener(mFrameListener);
+        } else {
+            FrameClock.getInstance().removeListener(mFrameListener);
+            // re-anchor the play time on the next frame
+            mStartTime = TIME_UNSET;
+            mLastFrameTime = TIME_UNSET;
+            if (mStatsRecorder != null) {
+                mStatsRecorder.recordFramesStopped();
+            }
+        }
+    }
+
+    private boolean canUseRenderThread() {
+        return mRenderThreadEnabled && mAnimatedArcFits && mIsRunning && isVisible()
+                && !mIsDeterminate && !isCompleting() && mFrameRate != FRAME_RATE_STATIC
+                && Build.VERSION.SDK_INT >= RENDER_THREAD_MIN_SDK;
+    }
+
+    private void startAnimatedArc() {
+        if (mAnimatedArcRunning) {
+            return;
+        }
+
+        if (mAnimatedArc == null) {
+            mAnimatedArc = ContextCompat.getDrawable(mAppContext,
+                    mPaint.getStrokeCap() == Paint.Cap.ROUND
+                            ? R.drawable.fp_arc_animated_rounded
+                            : R.drawable.fp_arc_animated).mutate();
+            DrawableCompat.setTint(mAnimatedArc, mPaint.getColor());
+            mAnimatedArc.setAlpha(mPaint.getAlpha());
+            mAnimatedArc.setColorFilter(mPaint.getColorFilter());
+            mAnimatedArc.setBounds(mAnimatedArcBounds);
+            mAnimatedArc.setCallback(mAnimatedArcCallback);
+        }
+
+        // the vector timeline starts where every cycle starts, turn it to where this cycle starts
+        mAnimatedArcStartPlayTime = mPlayTime;
+        ArcTimeline.getIndeterminateFrame(mAnimatedArcStartPlayTime, mAnimatedArcFrame);
+        final float startAngle = mAnimatedArcFrame.startAngle;
+        ArcTimeline.getIndeterminateFrame(0, mAnimatedArcFrame);
+        mAnimatedArcRotation = startAngle - mAnimatedArcFrame.startAngle;
+        mAnimatedArcRunning = true;
+        mAnimatedArcStartTime = System.nanoTime();
+        ((Animatable) mAnimatedArc).start();
+        invalidateAll();
+    }
+
+    /**
+     * Stops the render thread animation and carries its timeline over to the play time, so that
+     * main thread frames continue about where the render thread was.
+     */
+    private void stopAnimatedArc() {
+        if (!mAnimatedArcRunning) {
+            return;
+        }
+
+        mAnimatedArcRunning = false;
+        ((Animatable) mAnimatedArc).stop();
+        mPlayTime = mAnimatedArcStartPlayTime
+                + (System.nanoTime() - mAnimatedArcStartTime) / NANOS_PER_MILLI;
+        mStartTime = TIME_UNSET;
+        ArcTimeline.getIndeterminateFrame(mPlayTime, mArcFrame);
+        invalidateAll();
+    }
+
+    /**
+     * Shows the still arc of {@link #FRAME_RATE_STATIC} at the current play time, or halfway
+     * through growing if the circle did not spin yet.
+     */
+    private void showStaticArc() {
+        if (mPlayTime == 0) {
+            mPlayTime = STATIC_PLAY_TIME;
+        }
+        ArcTimeline.getIndeterminateFrame(mPlayTime, mArcFrame);
+        invalidateArc();
+    }
+
+    /**
+     * Returns whether the drawable is currently subscribed to the {@link FrameClock}.
+     *
+     * @return whether the drawable is currently subscribed to the frame clock
+     */
+    boolean isReceivingFrames() {
+        return FrameClock.getInstance().hasListener(mFrameListener);
+    }
+
+    /**
+     * Computes the arc for the frame and invalidates the drawable if it moved.
+     *
+     * @param frameTimeNanos the vsync time of the frame in {@link System#nanoTime()} base
+     */
+    void doFrame(long frameTimeNanos) {
+        if (!mIsRunning) {
+            return;
+        }
+
+        if (mFrameRate == FRAME_RATE_CAPPED && mLastFrameTime != TIME_UNSET
+                && frameTimeNanos - mLastFrameTime
+                < mCappedFrameIntervalNanos - FRAME_RATE_TOLERANCE_NANOS) {
+            // the play time follows the frame time, skipped frames do not slow the circle down
+            return;
+        }
+        mLastFrameTime = frameTimeNanos;
+
+        if (mIsDeterminate && mCompleteStartPlayTime == TIME_UNSET) {
+            doProgressFrame(frameTimeNanos);
+            return;
+        }
+
+        if (mStartTime == TIME_UNSET) {
+            // continue where we paused, if we did
+            mStartTime = frameTimeNanos - mPlayTime * NANOS_PER_MILLI;
+        }
+
+        final long playTime = (frameTimeNanos - mStartTime) / NANOS_PER_MILLI;
+        if (canUseRenderThread() && playTime / ArcTimeline.CYCLE_DURATION
+                != mPlayTime / ArcTimeline.CYCLE_DURATION) {
+            // a new cycle started, hand over to the render thread from its beginning
+            mPlayTime = playTime - playTime % ArcTimeline.CYCLE_DURATION;
+            updateFrameSubscription();
+            return;
+        }
+        mPlayTime = playTime;
+        if (mShowCompleteAnimOnNextCycle) {
+            mShowCompleteAnimOnNextCycle = false;
+            mCompleteStartPlayTime = mFrameRate == FRAME_RATE_STATIC
+                    ? playTime
+                    : ArcTimeline.getCycleEndTime(playTime);
+        }
+
+        if (mCompleteStartPlayTime != TIME_UNSET && playTime >= mCompleteStartPlayTime) {
+            // complete from the progress or from where the arc was when the last cycle ended
+            if (mIsDeterminate) {
+                ArcTimeline.getDeterminateFrame(mDeterminateProgress, mArcFrame);
+            } else {
+                ArcTimeline.getIndeterminateFrame(mCompleteStartPlayTime, mArcFrame);
+            }
+            if (mFrameRate == FRAME_RATE_STATIC) {
+                // a static circle skips the complete animation
+                mArcFrame.phase = ArcTimeline.PHASE_DONE;
+            } else {
+                ArcTimeline.getCompleteFrame(playTime - mCompleteStartPlayTime, mCompleteDuration,
+                        mArcFrame.startAngle, mArcFrame.sweepAngle, mArcFrame);
+            }
+        } else {
+            ArcTimeline.getIndeterminateFrame(playTime, mArcFrame);
+        }
+
+        if (mArcFrame.phase == ArcTimeline.PHASE_DONE) {
+            recordFrame(frameTimeNanos, false);
+            stop();
+            if (mFinalAnimationListener != null) {
+                mFinalAnimationListener.onProgressFinalAnimationComplete();
+            }
+            return;
+        }
+
+        recordFrame(frameTimeNanos, invalidateArc());
+    }
+
+    private void doProgressFrame(long frameTimeNanos) {
+        // the pending flag stays set while the frames run, they pick up every progress
+        float progress = readProgress();
+        if (Float.isNaN(progress) || progress == mDeterminateProgress) {
+            // the frames stop, a progress set from now on posts a new update
+            mProgressUpdatePending.set(false);
+            progress = readProgress();
+            if (Float.isNaN(progress) || progress == mDeterminateProgress
+                    || !mProgressUpdatePending.compareAndSet(false, true)) {
+                // nothing new or its update is already posted
+                mProgressChanged = false;
+                recordFrame(frameTimeNanos, false);
+                updateFrameSubscription();
+                return;
+            }
+        }
+
+        mDeterminateProgress = progress;
+        ArcTimeline.getDeterminateFrame(progress, mArcFrame);
+        recordFrame(frameTimeNanos, invalidateArc());
+    }
+
+    private void recordFrame(long frameTimeNanos, boolean rendered) {
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordFrame(frameTimeNanos, mArcFrame.phase, mArcFrame.startAngle,
+                    mArcFrame.sweepAngle);
+        }
+
+        if (mStatsRecorder == null) {
+            return;
+        }
+
+        mStatsRecorder.recordFrame(frameTimeNanos, mArcFrame.phase, rendered);
+        if (mStatsListener != null && mStatsRecorder.shouldDispatch(frameTimeNanos)) {
+            mStatsRecorder.getStats(mListenerStats);
+            mStatsListener.onProgressStats(mListenerStats);
+        }
+    }
+
+    /**
+     * Invalidates only the area covered by the arc in this and in the last frame, at most once per
+     * frame and not at all if the arc did not move. The area is exposed by {@link #getDirtyBounds()}.
+     *
+     * @return whether the arc moved and was invalidated
+     */
+    private boolean invalidateArc() {
+        if (mArcFrame.startAngle == mInvalidatedStartAngle
+                && mArcFrame.sweepAngle == mInvalidatedSweepAngle) {
+            return false;
+        }
+
+        mInvalidatedStartAngle = mArcFrame.startAngle;
+        mInvalidatedSweepAngle = mArcFrame.sweepAngle;
+        computeArcBounds(mArcFrame.startAngle, mArcFrame.sweepAngle, mDirtyArcBounds);
+        mDirtyBounds.set(mDirtyArcBounds);
+        if (!mLastArcBounds.isEmpty()) {
+            mDirtyBounds.union(mLastArcBounds);
+        }
+        mLastArcBounds.set(mDirtyArcBounds);
+
+        // the stroke is centered on the arc, add one pixel for anti-aliasing
+        final float strokeInset = mPaint.getStrokeWidth() / 2f + 1;
+        mDirtyBounds.inset(-strokeInset, -strokeInset);
+        mDirtyBounds.roundOut(mDirtyRect);
+        invalidateSelf();
+        return true;
+    }
+
+    /**
+     * Computes the bounding box of the arc on the oval defined by {@link #mArcBounds}, without the
+     * stroke width.
+     *
+     * @param startAngle the start angle of the arc
+     * @param sweepAngle the sweep angle of the arc
+     * @param out        the rect to write the bounds into
+     */
+    private void computeArcBounds(float startAngle, float sweepAngle, @NonNull RectF out) {
+        if (sweepAngle >= 360) {
+            out.set(mArcBounds);
+            return;
+        }
+
+        final float centerX = mArcBounds.centerX();
+        final float centerY = mArcBounds.centerY();
+        final float radiusX = mArcBounds.width() / 2;
+        final float radiusY = mArcBounds.height() / 2;
+        final float endAngle = startAngle + sweepAngle;
+        final float startX = centerX + radiusX * (float) Math.cos(Math.toRadians(startAngle));
+        final float startY = centerY + radiusY * (float) Math.sin(Math.toRadians(startAngle));
+        final float endX = centerX + radiusX * (float) Math.cos(Math.toRadians(endAngle));
+        final float endY = centerY + radiusY * (float) Math.sin(Math.toRadians(endAngle));
+        out.set(Math.min(startX, endX), Math.min(startY, endY), Math.max(startX, endX),
+                Math.max(startY, endY));
+
+        // add the extreme points of the oval the arc passes through
+        for (int angle = (int) Math.ceil(startAngle / 90) * 90; angle <= endAngle; angle += 90) {
+            switch (angle / 90 % 4) {
+                case 0:
+                    out.right = centerX + radiusX;
+                    break;
+                case 1:
+                    out.bottom = centerY + radiusY;
+                    break;
+                case 2:
+                    out.left = centerX - radiusX;
+                    break;
+                case 3:
+                    out.top = centerY - radiusY;
+                    break;
+            }
+        }
+    }
+
+    private void invalidateAll() {
+        mDirtyRect.set(getBounds());
+        invalidateSelf();
+    }
+
+    private void resetArcProperties() {
+        mArcFrame.reset();
+        mLastArcBounds.setEmpty();
+        mDirtyRect.set(getBounds());
+        mInvalidatedStartAngle = Float.NaN;
+        mInvalidatedSweepAngle = Float.NaN;
+        mStartTime = TIME_UNSET;
+        mPlayTime = 0;
+        mCompleteStartPlayTime = TIME_UNSET;
+        mShowCompleteAnimOnNextCycle = false;
+        mDeterminateProgress = Float.NaN;
+    }
+
+    /**
+     * Returns the arc of the last frame.
+     *
+     * @return the arc of the last frame
+     */
+    @NonNull
+    ArcFrame getArcFrame() {
+        return mArcFrame;
+    }
+
+    /**
+     * Returns the area that changed since the last frame. Unlike {@link #getDirtyBounds()}, this is
+     * also available below Lollipop.
+     *
+     * @return the area that changed since the last frame
+     */
+    @NonNull
+    Rect getArcDirtyBounds() {
+        return mDirtyRect;
+    }
+
+    @NonNull
+    @Override
+    public Rect getDirtyBounds() {
+        return getArcDirtyBounds();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+
+        updateArcBounds(bounds);
+        mDirtyRect.set(bounds);
+        updateFrameSubscription();
+    }
+
+    private void updateArcBounds(@NonNull Rect bounds) {
+        final float inset = mPaint.getStrokeWidth() / 2;
+        final float size = Math.min(bounds.width(), bounds.height()) - 2 * inset;
+        mArcBounds.left = bounds.exactCenterX() - size / 2;
+        mArcBounds.top = bounds.exactCenterY() - size / 2;
+        mArcBounds.right = mArcBounds.left + size;
+        mArcBounds.bottom = mArcBounds.top + size;
+        mLastArcBounds.setEmpty();
+
+        // a sprite covers the arc including the stroke
+        mSpriteBounds.set(mArcBounds);
+        mSpriteBounds.inset(-inset, -inset);
+        mSpriteAtlas = null;
+
+        // scale the vector so that its circle lies on the arc, its stroke scales along and only
+        // stands in for the arc's stroke if it ends up about as wide
+        final float scale = mArcBounds.width() / (2 * ANIMATED_ARC_RADIUS);
+        final int vectorSize = Math.round(ANIMATED_ARC_VIEWPORT_SIZE * scale);
+        mAnimatedArcBounds.left = Math.round(mArcBounds.centerX() - vectorSize / 2f);
+        mAnimatedArcBounds.top = Math.round(mArcBounds.centerY() - vectorSize / 2f);
+        mAnimatedArcBounds.right = mAnimatedArcBounds.left + vectorSize;
+        mAnimatedArcBounds.bottom = mAnimatedArcBounds.top + vectorSize;
+        mAnimatedArcFits = vectorSize > 0 && Math.abs(ANIMATED_ARC_STROKE_WIDTH * scale
+                - mPaint.getStrokeWidth()) <= ANIMATED_ARC_STROKE_TOLERANCE;
+        if (mAnimatedArc != null) {
+            mAnimatedArc.setBounds(mAnimatedArcBounds);
+        }
+    }
+
+    @Override
+    public void invalidateSelf() {
+        super.invalidateSelf();
+
+        if (mStatsRecorder != null) {
+            mStatsRecorder.recordInvalidation();
+        }
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        if (mStatsRecorder == null && mTraceRecorder == null) {
+            drawArc(canvas);
+            return;
+        }
+
+        final long start = System.nanoTime();
+        drawArc(canvas);
+        recordDraw(System.nanoTime() - start);
+    }
+
+    /**
+     * Records the duration of a draw of the arc with the stats and the trace, if enabled.
+     *
+     * @param durationNanos the duration of the draw in nanoseconds
+     */
+    void recordDraw(long durationNanos) {
+        if (mStatsRecorder != null) {
+            mStatsRecorder.recordDraw(durationNanos);
+        }
+        if (mTraceRecorder != null) {
+            mTraceRecorder.recordDraw(durationNanos);
+        }
+    }
+
+    /**
+     * Draws the arc without recording any stats, for callers that measure the draw themselves.
+     *
+     * @param canvas the canvas to draw into
+     */
+    void drawArc(@NonNull Canvas canvas) {
+        if (mAnimatedArcRunning) {
+            final int saveCount = canvas.save();
+            canvas.rotate(mAnimatedArcRotation, mArcBounds.centerX(), mArcBounds.centerY());
+            mAnimatedArc.draw(canvas);
+            canvas.restoreToCount(saveCount);
+            return;
+        }
+
+        if (mArcFrame.sweepAngle == 0) {
+            return;
+        }
+
+        if (mSpriteAtlasEnabled && mSpriteBounds.width() > 0) {
+            if (mSpriteAtlas == null || mSpriteAtlas.isEvicted()) {
+                // null until it is rendered in the background or for good if it is too large,
+                // draw the arc until then
+                mSpriteAtlas = ArcSpriteAtlas.obtain(mAppContext,
+                        Math.round(mSpriteBounds.width()), mPaint.getStrokeWidth(),
+                        mPaint.getStrokeCap() == Paint.Cap.ROUND);
+            }
+            if (mSpriteAtlas != null) {
+                mSpriteAtlas.draw(canvas, mArcFrame.startAngle, mArcFrame.sweepAngle,
+                        mSpriteBounds, mSpriteRect, mPaint);
+                return;
+            }
+        }
+
+        canvas.drawArc(mArcBounds, mArcFrame.startAngle, mArcFrame.sweepAngle, false, mPaint);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+        if (mAnimatedArc != null) {
+            mAnimatedArc.setAlpha(alpha);
+        }
+        invalidateAll();
+    }
+
+    @Override
+    public int getAlpha() {
+        return mPaint.getAlpha();
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+        if (mAnimatedArc != null) {
+            mAnimatedArc.setColorFilter(colorFilter);
+        }
+        invalidateAll();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
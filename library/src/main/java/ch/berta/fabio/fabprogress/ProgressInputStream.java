@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Provides an {@link InputStream} that reports how much of it was read to a {@link FabProgress}
+ * and starts the final animation once the end of the stream is reached.
+ * <p/>
+ * Reads are passed straight to the wrapped stream. The bytes are counted per read call and the
+ * progress is reported in batches, so wrapping a stream does not slow down the copy loop.
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+    private final ProgressReporter mReporter;
+    private long mMarkedBytes;
+
+    /**
+     * Constructs a new {@link ProgressInputStream}.
+     *
+     * @param in          the stream to read from
+     * @param fabProgress the view to report the progress to
+     * @param totalBytes  the length of the stream, or a negative value if unknown, in which case
+     *                    only the end of the stream is reported
+     */
+    public ProgressInputStream(@NonNull InputStream in, @NonNull FabProgress fabProgress,
+                               long totalBytes) {
+        super(in);
+
+        mReporter = new ProgressReporter(fabProgress, totalBytes);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int result = in.read();
+        if (result == -1) {
+            mReporter.onFinished();
+        } else {
+            mReporter.onBytesTransferred(1);
+        }
+
+        return result;
+    }
+
+    @Override
+    public int read(@NonNull byte[] buffer, int byteOffset, int byteCount) throws IOException {
+        final int read = in.read(buffer, byteOffset, byteCount);
+        if (read == -1) {
+            mReporter.onFinished();
+        } else {
+            mReporter.onBytesTransferred(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public long skip(long byteCount) throws IOException {
+        final long skipped = in.skip(byteCount);
+        mReporter.onBytesTransferred(skipped);
+
+        return skipped;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+        in.mark(readLimit);
+        mMarkedBytes = mReporter.getBytesTransferred();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        in.reset();
+        mReporter.setBytesTransferred(mMarkedBytes);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Provides an {@link OutputStream} that reports how much was written to a {@link FabProgress}
+ * and starts the final animation once it is closed after everything was written. A short write
+ * or a failed close leaves the progress where it is.
+ * <p/>
+ * Unlike {@link FilterOutputStream}, array writes are passed straight to the wrapped stream
+ * instead of byte by byte. The bytes are counted per write call and the progress is reported in
+ * batches, so wrapping a stream does not slow down the copy loop.
+ */
+public class ProgressOutputStream extends FilterOutputStream {
+
+    private final ProgressReporter mReporter;
+
+    /**
+     * Constructs a new {@link ProgressOutputStream}.
+     *
+     * @param out         the stream to write to
+     * @param fabProgress the view to report the progress to
+     * @param totalBytes  the number of bytes that will be written, or a negative value if unknown,
+     *                    in which case only the end is reported
+     */
+    public ProgressOutputStream(@NonNull OutputStream out, @NonNull FabProgress fabProgress,
+                                long totalBytes) {
+        super(out);
+
+        mReporter = new ProgressReporter(fabProgress, totalBytes);
+    }
+
+    @Override
+    public void write(int oneByte) throws IOException {
+        out.write(oneByte);
+        mReporter.onBytesTransferred(1);
+    }
+
+    @Override
+    public void write(@NonNull byte[] buffer, int offset, int length) throws IOException {
+        out.write(buffer, offset, length);
+        mReporter.onBytesTransferred(length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        // like the end of a stream being read, only a complete transfer starts the final animation
+        if (mReporter.isTransferComplete()) {
+            mReporter.onFinished();
+        }
+    }
+}
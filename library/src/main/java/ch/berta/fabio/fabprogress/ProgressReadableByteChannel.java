@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Provides a {@link ReadableByteChannel} decorator that reports how much was read to a
+ * {@link FabProgress} and starts the final animation once the end of the channel is reached.
+ * <p/>
+ * The buffers, direct or not, are passed unchanged to the wrapped channel and the progress is
+ * reported in batches.
+ */
+public class ProgressReadableByteChannel implements ReadableByteChannel {
+
+    private final ReadableByteChannel mChannel;
+    private final ProgressReporter mReporter;
+
+    /**
+     * Constructs a new {@link ProgressReadableByteChannel}.
+     *
+     * @param channel     the channel to read from
+     * @param fabProgress the view to report the progress to
+     * @param totalBytes  the size of the channel, or a negative value if unknown, in which case
+     *                    only the end of the channel is reported
+     */
+    public ProgressReadableByteChannel(@NonNull ReadableByteChannel channel,
+                                       @NonNull FabProgress fabProgress, long totalBytes) {
+        mChannel = channel;
+        mReporter = new ProgressReporter(fabProgress, totalBytes);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        final int read = mChannel.read(dst);
+        if (read == -1) {
+            mReporter.onFinished();
+        } else {
+            mReporter.onBytesTransferred(read);
+        }
+
+        return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+/**
+ * Counts the bytes transferred by one of the progress streams or channels and reports the
+ * fraction to a {@link FabProgress} in batches, not on every read or write. Once the transfer is
+ * finished, it starts the final animation on the main thread.
+ * <p/>
+ * Meant to be used by a single thread, the one doing the transfer.
+ */
+final class ProgressReporter {
+
+    /**
+     * The number of progress updates over the whole transfer.
+     */
+    private static final long REPORT_STEPS = 200;
+    private static final long MIN_REPORT_BYTES = 4096;
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private final FabProgress mFabProgress;
+    private final long mTotalBytes;
+    private final long mReportBytes;
+    private final Runnable mFinalAnimationRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mFabProgress.startProgressFinalAnimation();
+        }
+    };
+    private long mBytes;
+    private long mReportedBytes;
+    private boolean mIsFinished;
+
+    /**
+     * Constructs a new {@link ProgressReporter}.
+     *
+     * @param fabProgress the view to report the progress to
+     * @param totalBytes  the expected number of bytes, or a negative value if unknown, in which
+     *                    case only the end of the transfer is reported
+     */
+    ProgressReporter(@NonNull FabProgress fabProgress, long totalBytes) {
+        mFabProgress = fabProgress;
+        mTotalBytes = totalBytes;
+        mReportBytes = Math.max(totalBytes / REPORT_STEPS, MIN_REPORT_BYTES);
+    }
+
+    /**
+     * Adds the transferred bytes and reports the progress if enough bytes were transferred since
+     * the last report.
+     *
+     * @param bytes the number of bytes transferred
+     */
+    void onBytesTransferred(long bytes) {
+        mBytes += bytes;
+        if (mTotalBytes > 0 && mBytes - mReportedBytes >= mReportBytes) {
+            mReportedBytes = mBytes;
+            mFabProgress.setProgress((float) mBytes / mTotalBytes);
+        }
+    }
+
+    /**
+     * Returns the number of bytes transferred so far.
+     *
+     * @return the number of bytes transferred so far
+     */
+    long getBytesTransferred() {
+        return mBytes;
+    }
+
+    /**
+     * Returns whether all the expected bytes were transferred. Always true if the number of bytes
+     * is unknown, as then only the caller knows when the transfer is done.
+     *
+     * @return whether all the expected bytes were transferred
+     */
+    boolean isTransferComplete() {
+        return mTotalBytes < 0 || mBytes >= mTotalBytes;
+    }
+
+    /**
+     * Resets the number of transferred bytes, e.g. when an input stream is reset to a mark.
+     *
+     * @param bytes the number of bytes transferred
+     */
+    void setBytesTransferred(long bytes) {
+        mBytes = bytes;
+        mReportedBytes = Math.min(mReportedBytes, bytes);
+    }
+
+    /**
+     * Reports the end of the transfer: completes the progress and starts the final animation.
+     * Only the first call has an effect.
+     */
+    void onFinished() {
+        if (mIsFinished) {
+            return;
+        }
+
+        mIsFinished = true;
+        if (mTotalBytes > 0) {
+            mFabProgress.setProgress(1f);
+        }
+        // queued after the progress update, which is posted to the same handler
+        MAIN_HANDLER.post(mFinalAnimationRunnable);
+    }
+}
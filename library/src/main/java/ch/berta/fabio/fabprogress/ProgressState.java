@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+/**
+ * Holds the progress state of a {@link FabProgress} outside of the view: what it shows and how
+ * far its timeline got. Saved with {@link FabProgress#saveProgressState(ProgressState)} and
+ * applied to the same or any other view with
+ * {@link FabProgress#restoreProgressState(ProgressState)}.
+ */
+final class ProgressState {
+
+    static final int IDLE = 0;
+    static final int SPINNING = 1;
+    static final int DETERMINATE = 2;
+    static final int COMPLETING = 3;
+    static final int COMPLETE = 4;
+    static final long COMPLETE_PENDING = -1;
+    int state = IDLE;
+    /**
+     * The play time of the spinning circle in milliseconds.
+     */
+    long playTime;
+    /**
+     * The determinate progress, NaN if the circle is indeterminate.
+     */
+    float progress = Float.NaN;
+    /**
+     * The play time the final animation started at, {@link #COMPLETE_PENDING} if it waits for the
+     * end of the current cycle.
+     */
+    long completeStartPlayTime = COMPLETE_PENDING;
+
+    void set(ProgressState other) {
+        state = other.state;
+        playTime = other.playTime;
+        progress = other.progress;
+        completeStartPlayTime = other.completeStartPlayTime;
+    }
+
+    void reset() {
+        state = IDLE;
+        playTime = 0;
+        progress = Float.NaN;
+        completeStartPlayTime = COMPLETE_PENDING;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LongSparseArray;
+
+/**
+ * Keeps the progress of list items outside of their views, keyed by stable item id, so that a
+ * {@link FabProgress} in a recycled row neither leaks the spinner of its previous item nor loses
+ * the one of its current item. Any number of items can be in progress, only the bound views hold
+ * drawables and frame subscriptions.
+ * <p/>
+ * Drive the progress of the items through the store, bind the view in
+ * {@code onBindViewHolder()} and unbind it in {@code onViewRecycled()}:
+ * <pre>
+ * public void onBindViewHolder(ViewHolder holder, int position) {
+ *     mStore.bind(holder.fab, getItemId(position));
+ * }
+ *
+ * public void onViewRecycled(ViewHolder holder) {
+ *     mStore.unbind(holder.fab);
+ * }
+ * </pre>
+ * The timeline of a spinning item keeps running while it is not bound, so it continues where it
+ * would be when it scrolls back in. A final animation that was running when the view got unbound
+ * counts as done, nobody saw its end.
+ * <p/>
+ * Must only be used from the main thread.
+ */
+public final class ProgressStateStore {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+    private final LongSparseArray<Entry> mEntries = new LongSparseArray<>();
+    private final ProgressState mIdleState = new ProgressState();
+    private final ProgressState mSavedState = new ProgressState();
+
+    /**
+     * Binds the view to the item and makes it show the item's progress right away. A view that is
+     * still bound to another item is unbound first. Binding a view to the item it is already bound
+     * to has no effect.
+     *
+     * @param view   the view that shows the item
+     * @param itemId the stable id of the item
+     */
+    public void bind(@NonNull FabProgress view, long itemId) {
+        if (view.getBoundStore() == this && view.getBoundItemId() == itemId) {
+            return;
+        }
+        if (view.getBoundStore() != null) {
+            view.getBoundStore().unbind(view);
+        }
+
+        final Entry entry = mEntries.get(itemId);
+        if (entry != null && entry.view != null) {
+            // the item moved to another view without the old one being unbound
+            unbind(entry.view);
+        }
+
+        view.setBoundItem(this, itemId);
+        if (entry == null) {
+            view.restoreProgressState(mIdleState);
+            return;
+        }
+
+        entry.view = view;
+        if (entry.state.state == ProgressState.SPINNING) {
+            entry.state.playTime = (System.nanoTime() - entry.startTimeNanos) / NANOS_PER_MILLI;
+        }
+        view.restoreProgressState(entry.state);
+    }
+
+    /**
+     * Saves the progress of the view's item, stops the view's circle and releases the view from
+     * the item. Has no effect if the view is not bound to this store.
+     *
+     * @param view the view to unbind
+     */
+    public void unbind(@NonNull FabProgress view) {
+        if (view.getBoundStore() != this) {
+            return;
+        }
+
+        final long itemId = view.getBoundItemId();
+        view.setBoundItem(null, 0);
+        view.saveProgressState(mSavedState);
+        view.restoreProgressState(mIdleState);
+
+        if (mSavedState.state == ProgressState.IDLE) {
+            mEntries.remove(itemId);
+            return;
+        }
+
+        final Entry entry = obtainEntry(itemId);
+        entry.view = null;
+        entry.state.set(mSavedState);
+        if (entry.state.state == ProgressState.COMPLETING) {
+            entry.state.state = ProgressState.COMPLETE;
+        }
+        entry.startTimeNanos = System.nanoTime() - entry.state.playTime * NANOS_PER_MILLI;
+    }
+
+    /**
+     * Starts the indeterminate spinning circle of the item.
+     *
+     * @param itemId the stable id of the item
+     */
+    public void startProgress(long itemId) {
+        final Entry entry = obtainEntry(itemId);
+        entry.state.reset();
+        entry.state.state = ProgressState.SPINNING;
+        entry.startTimeNanos = System.nanoTime();
+        if (entry.view != null) {
+            entry.view.startProgress();
+        }
+    }
+
+    /**
+     * Shows a determinate progress for the item instead of the spinning circle.
+     *
+     * @param itemId   the stable id of the item
+     * @param progress the progress between 0 and 1
+     */
+    public void setProgress(long itemId, float progress) {
+        final Entry entry = obtainEntry(itemId);
+        entry.state.state = ProgressState.DETERMINATE;
+        entry.state.progress = Math.max(0f, Math.min(progress, 1f));
+        if (entry.view != null) {
+            entry.view.setProgress(progress);
+        }
+    }
+
+    /**
+     * Completes the progress of the item. If it is bound, its view plays the final animation,
+     * otherwise the item shows the complete icon once it is bound again. Has no effect if the
+     * item is not in progress.
+     *
+     * @param itemId the stable id of the item
+     */
+    public void startProgressFinalAnimation(long itemId) {
+        final Entry entry = mEntries.get(itemId);
+        if (entry == null || (entry.state.state != ProgressState.SPINNING
+                && entry.state.state != ProgressState.DETERMINATE)) {
+            return;
+        }
+
+        if (entry.view != null) {
+            entry.state.state = ProgressState.COMPLETING;
+            entry.view.startProgressFinalAnimation();
+        } else {
+            entry.state.state = ProgressState.COMPLETE;
+        }
+    }
+
+    /**
+     * Forgets the progress of the item, e.g. when it is removed from the list. A bound view goes
+     * back to its original icon.
+     *
+     * @param itemId the stable id of the item
+     */
+    public void remove(long itemId) {
+        final Entry entry = mEntries.get(itemId);
+        if (entry == null) {
+            return;
+        }
+
+        mEntries.remove(itemId);
+        if (entry.view != null) {
+            entry.view.restoreProgressState(mIdleState);
+        }
+    }
+
+    /**
+     * Returns whether the item is spinning, shows a determinate progress or completes.
+     *
+     * @param itemId the stable id of the item
+     * @return whether the item is in progress
+     */
+    public boolean isInProgress(long itemId) {
+        final int state = getState(itemId);
+        return state != ProgressState.IDLE && state != ProgressState.COMPLETE;
+    }
+
+    /**
+     * Returns whether the item completed its progress.
+     *
+     * @param itemId the stable id of the item
+     * @return whether the item shows the complete icon
+     */
+    public boolean isComplete(long itemId) {
+        return getState(itemId) == ProgressState.COMPLETE;
+    }
+
+    /**
+     * Returns the number of items with a progress state.
+     *
+     * @return the number of items in the store
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    private int getState(long itemId) {
+        final Entry entry = mEntries.get(itemId);
+        if (entry == null) {
+            return ProgressState.IDLE;
+        }
+        if (entry.view == null) {
+            return entry.state.state;
+        }
+
+        // the bound view might have finished its final animation or reset itself since
+        entry.view.saveProgressState(mSavedState);
+        return mSavedState.state;
+    }
+
+    @NonNull
+    private Entry obtainEntry(long itemId) {
+        Entry entry = mEntries.get(itemId);
+        if (entry == null) {
+            entry = new Entry();
+            mEntries.put(itemId, entry);
+        }
+
+        return entry;
+    }
+
+    private static final class Entry {
+        final ProgressState state = new ProgressState();
+        long startTimeNanos;
+        @Nullable
+        FabProgress view;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Provides a snapshot of the rendering stats of a progress circle, collected since the stats
+ * were enabled or last reset. Instances are meant to be reused: pass the same one to
+ * {@link ProgressArcDrawable#getStats(ProgressStats)} every time to read the stats without
+ * allocating.
+ */
+public final class ProgressStats {
+
+    private static final long NANOS_PER_SECOND = 1000000000;
+    private static final ProgressStats EMPTY = new ProgressStats();
+    long mElapsedTimeNanos;
+    int mDrawCount;
+    long mDrawTimeNanos;
+    long mMaxDrawTimeNanos;
+    int mRenderedFrames;
+    int mSkippedFrames;
+    int mInvalidations;
+    long mGrowTimeNanos;
+    long mShrinkTimeNanos;
+    long mCompleteTimeNanos;
+    long mDeterminateTimeNanos;
+    long mIconFadeTimeNanos;
+
+    /**
+     * Returns the time since the stats were enabled or last reset.
+     *
+     * @return the time since the stats were enabled or last reset in nanoseconds
+     */
+    public long getElapsedTimeNanos() {
+        return mElapsedTimeNanos;
+    }
+
+    /**
+     * Returns the number of times the progress circle was drawn.
+     *
+     * @return the number of draw calls
+     */
+    public int getDrawCount() {
+        return mDrawCount;
+    }
+
+    /**
+     * Returns the total time spent drawing. For {@link FabProgress} this is the whole
+     * {@code onDraw()}, including the button itself.
+     *
+     * @return the total draw time in nanoseconds
+     */
+    public long getDrawTimeNanos() {
+        return mDrawTimeNanos;
+    }
+
+    /**
+     * Returns the average time of a single draw call.
+     *
+     * @return the average draw time in nanoseconds, 0 if nothing was drawn yet
+     */
+    public long getAverageDrawTimeNanos() {
+        return mDrawCount == 0 ? 0 : mDrawTimeNanos / mDrawCount;
+    }
+
+    /**
+     * Returns the time of the slowest draw call.
+     *
+     * @return the maximum draw time in nanoseconds
+     */
+    public long getMaxDrawTimeNanos() {
+        return mMaxDrawTimeNanos;
+    }
+
+    /**
+     * Returns the number of animation frames in which the arc moved and was invalidated.
+     *
+     * @return the number of rendered frames
+     */
+    public int getRenderedFrames() {
+        return mRenderedFrames;
+    }
+
+    /**
+     * Returns the number of animation frames in which the arc did not move and nothing was
+     * invalidated.
+     *
+     * @return the number of skipped frames
+     */
+    public int getSkippedFrames() {
+        return mSkippedFrames;
+    }
+
+    /**
+     * Returns the number of times the progress circle invalidated itself.
+     *
+     * @return the number of invalidations
+     */
+    public int getInvalidations() {
+        return mInvalidations;
+    }
+
+    /**
+     * Returns the average number of invalidations per second since the stats were enabled or
+     * last reset.
+     *
+     * @return the number of invalidations per second
+     */
+    public float getInvalidationsPerSecond() {
+        return mElapsedTimeNanos == 0 ? 0 : (float) mInvalidations * NANOS_PER_SECOND / mElapsedTimeNanos;
+    }
+
+    /**
+     * Returns the time the arc spent growing.
+     *
+     * @return the time in the grow phase in nanoseconds
+     */
+    public long getGrowTimeNanos() {
+        return mGrowTimeNanos;
+    }
+
+    /**
+     * Returns the time the arc spent shrinking.
+     *
+     * @return the time in the shrink phase in nanoseconds
+     */
+    public long getShrinkTimeNanos() {
+        return mShrinkTimeNanos;
+    }
+
+    /**
+     * Returns the time spent in the final animation of the arc.
+     *
+     * @return the time in the complete phase in nanoseconds
+     */
+    public long getCompleteTimeNanos() {
+        return mCompleteTimeNanos;
+    }
+
+    /**
+     * Returns the time spent animating a determinate progress.
+     *
+     * @return the time in the determinate phase in nanoseconds
+     */
+    public long getDeterminateTimeNanos() {
+        return mDeterminateTimeNanos;
+    }
+
+    /**
+     * Returns the time {@link FabProgress} spent fading between its icons. Always 0 for a
+     * {@link ProgressArcDrawable} used on its own.
+     *
+     * @return the time in icon fades in nanoseconds
+     */
+    public long getIconFadeTimeNanos() {
+        return mIconFadeTimeNanos;
+    }
+
+    void set(@NonNull ProgressStats stats) {
+        mElapsedTimeNanos = stats.mElapsedTimeNanos;
+        mDrawCount = stats.mDrawCount;
+        mDrawTimeNanos = stats.mDrawTimeNanos;
+        mMaxDrawTimeNanos = stats.mMaxDrawTimeNanos;
+        mRenderedFrames = stats.mRenderedFrames;
+        mSkippedFrames = stats.mSkippedFrames;
+        mInvalidations = stats.mInvalidations;
+        mGrowTimeNanos = stats.mGrowTimeNanos;
+        mShrinkTimeNanos = stats.mShrinkTimeNanos;
+        mCompleteTimeNanos = stats.mCompleteTimeNanos;
+        mDeterminateTimeNanos = stats.mDeterminateTimeNanos;
+        mIconFadeTimeNanos = stats.mIconFadeTimeNanos;
+    }
+
+    void reset() {
+        set(EMPTY);
+    }
+
+    @Override
+    public String toString() {
+        return "ProgressStats{" +
+                "elapsedMs=" + mElapsedTimeNanos / 1000000 +
+                ", draws=" + mDrawCount +
+                ", avgDrawUs=" + getAverageDrawTimeNanos() / 1000 +
+                ", maxDrawUs=" + mMaxDrawTimeNanos / 1000 +
+                ", rendered=" + mRenderedFrames +
+                ", skipped=" + mSkippedFrames +
+                ", invalidationsPerSecond=" + getInvalidationsPerSecond() +
+                ", growMs=" + mGrowTimeNanos / 1000000 +
+                ", shrinkMs=" + mShrinkTimeNanos / 1000000 +
+                ", completeMs=" + mCompleteTimeNanos / 1000000 +
+                ", determinateMs=" + mDeterminateTimeNanos / 1000000 +
+                ", iconFadeMs=" + mIconFadeTimeNanos / 1000000 +
+                '}';
+    }
+}
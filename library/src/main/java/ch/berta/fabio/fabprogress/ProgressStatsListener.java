@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Defines the actions to take when new rendering stats of a progress circle are available.
+ */
+public interface ProgressStatsListener {
+    /**
+     * Called about once per second while the progress circle is animating.
+     *
+     * @param stats the stats since they were enabled or last reset, reused for every call and
+     *              therefore only valid during the call
+     */
+    void onProgressStats(@NonNull ProgressStats stats);
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+/**
+ * Collects the rendering stats of a progress circle into primitive counters, so that recording
+ * them does not allocate and can stay enabled in production builds.
+ * <p/>
+ * Must only be used from the main thread.
+ */
+final class ProgressStatsRecorder {
+
+    private static final long TIME_UNSET = -1;
+    private static final long DISPATCH_INTERVAL_NANOS = 1000000000;
+    private final ProgressStats mStats = new ProgressStats();
+    private long mStartTimeNanos;
+    private long mLastFrameTimeNanos = TIME_UNSET;
+    private int mLastPhase = ArcTimeline.PHASE_IDLE;
+    private long mLastDispatchTimeNanos = TIME_UNSET;
+    private long mFadeStartTimeNanos = TIME_UNSET;
+
+    ProgressStatsRecorder() {
+        reset();
+    }
+
+    /**
+     * Clears all counters and starts measuring the elapsed time anew.
+     */
+    void reset() {
+        mStats.reset();
+        mStartTimeNanos = System.nanoTime();
+        mLastFrameTimeNanos = TIME_UNSET;
+        mLastDispatchTimeNanos = TIME_UNSET;
+        mFadeStartTimeNanos = TIME_UNSET;
+    }
+
+    void recordDraw(long durationNanos) {
+        mStats.mDrawCount++;
+        mStats.mDrawTimeNanos += durationNanos;
+        if (durationNanos > mStats.mMaxDrawTimeNanos) {
+            mStats.mMaxDrawTimeNanos = durationNanos;
+        }
+    }
+
+    void recordInvalidation() {
+        mStats.mInvalidations++;
+    }
+
+    /**
+     * Records an animation frame. The time since the previous frame is added to the phase the
+     * arc was in during that frame.
+     *
+     * @param frameTimeNanos the vsync time of the frame in {@link System#nanoTime()} base
+     * @param phase          the phase of the arc in this frame
+     * @param rendered       whether the arc moved and was invalidated
+     */
+    void recordFrame(long frameTimeNanos, int phase, boolean rendered) {
+        if (rendered) {
+            mStats.mRenderedFrames++;
+        } else {
+            mStats.mSkippedFrames++;
+        }
+
+        if (mLastFrameTimeNanos != TIME_UNSET) {
+            final long delta = frameTimeNanos - mLastFrameTimeNanos;
+            switch (mLastPhase) {
+                case ArcTimeline.PHASE_GROW:
+                    mStats.mGrowTimeNanos += delta;
+                    break;
+                case ArcTimeline.PHASE_SHRINK:
+                    mStats.mShrinkTimeNanos += delta;
+                    break;
+                case ArcTimeline.PHASE_COMPLETE:
+                    mStats.mCompleteTimeNanos += delta;
+                    break;
+                case ArcTimeline.PHASE_DETERMINATE:
+                    mStats.mDeterminateTimeNanos += delta;
+                    break;
+            }
+        }
+        mLastFrameTimeNanos = frameTimeNanos;
+        mLastPhase = phase;
+    }
+
+    /**
+     * Records that the frames stopped, so that the pause is not added to any phase.
+     */
+    void recordFramesStopped() {
+        mLastFrameTimeNanos = TIME_UNSET;
+    }
+
+    void recordIconFadeStarted() {
+        mFadeStartTimeNanos = System.nanoTime();
+    }
+
+    void recordIconFadeEnded() {
+        if (mFadeStartTimeNanos != TIME_UNSET) {
+            mStats.mIconFadeTimeNanos += System.nanoTime() - mFadeStartTimeNanos;
+            mFadeStartTimeNanos = TIME_UNSET;
+        }
+    }
+
+    /**
+     * Returns whether the stats listener is due, which it is about once per second.
+     *
+     * @param frameTimeNanos the vsync time of the current frame
+     * @return whether the stats listener should be called
+     */
+    boolean shouldDispatch(long frameTimeNanos) {
+        if (mLastDispatchTimeNanos == TIME_UNSET) {
+            mLastDispatchTimeNanos = frameTimeNanos;
+            return false;
+        }
+
+        if (frameTimeNanos - mLastDispatchTimeNanos < DISPATCH_INTERVAL_NANOS) {
+            return false;
+        }
+
+        mLastDispatchTimeNanos = frameTimeNanos;
+        return true;
+    }
+
+    /**
+     * Copies the current stats into the given snapshot.
+     *
+     * @param out the snapshot to write into
+     */
+    void getStats(@NonNull ProgressStats out) {
+        out.set(mStats);
+        out.mElapsedTimeNanos = System.nanoTime() - mStartTimeNanos;
+    }
+}
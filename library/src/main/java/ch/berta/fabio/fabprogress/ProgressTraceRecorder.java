@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.os.AsyncTask;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import ch.berta.fabio.fabprogress.core.FrameTrace;
+import ch.berta.fabio.fabprogress.core.FrameTraceReport;
+
+/**
+ * Records every frame of a progress circle and its icon fades into a binary ring buffer: the
+ * vsync time, the phase, the arc angles and the draw duration. Recording never allocates, so it
+ * can be left enabled while reproducing a stutter. Flush the trace to a file and analyse it on a
+ * desktop with {@link FrameTraceReport}.
+ * <p/>
+ * A recorder traces a single progress circle at a time, as the records carry no source and a
+ * draw duration always belongs to the last recorded frame. Use one recorder per view.
+ * <p/>
+ * Must only be used from the main thread, only the write to the file runs in the background.
+ */
+public final class ProgressTraceRecorder {
+
+    /**
+     * About one minute of frames at 60 fps.
+     */
+    public static final int DEFAULT_CAPACITY = 3600;
+    private static final String TAG = "ProgressTraceRecorder";
+    private final FrameTrace mTrace;
+    private final FrameTrace mSnapshot;
+    private final AtomicBoolean mFlushing = new AtomicBoolean();
+    private Object mOwner;
+
+    /**
+     * Constructs a new {@link ProgressTraceRecorder} that keeps the last
+     * {@link #DEFAULT_CAPACITY} frames.
+     */
+    public ProgressTraceRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new {@link ProgressTraceRecorder}.
+     *
+     * @param capacity the number of frames to keep, older ones are overwritten
+     */
+    public ProgressTraceRecorder(int capacity) {
+        mTrace = new FrameTrace(capacity);
+        mSnapshot = new FrameTrace(capacity);
+    }
+
+    /**
+     * Makes the owner the only source of frames of this recorder.
+     *
+     * @param owner the drawable that records its frames
+     * @throws IllegalStateException if the recorder already traces another drawable
+     */
+    void attach(@NonNull Object owner) {
+        if (mOwner != null && mOwner != owner) {
+            throw new IllegalStateException("recorder already traces another progress circle");
+        }
+
+        mOwner = owner;
+    }
+
+    /**
+     * Frees the recorder for another drawable, if the owner is the one it traces.
+     *
+     * @param owner the drawable that stops recording its frames
+     */
+    void detach(@NonNull Object owner) {
+        if (mOwner == owner) {
+            mOwner = null;
+        }
+    }
+
+    void recordFrame(long frameTimeNanos, int phase, float startAngle, float sweepAngle) {
+        mTrace.record(frameTimeNanos, phase, startAngle, sweepAngle);
+    }
+
+    void recordDraw(long durationNanos) {
+        mTrace.setLastDrawDuration(durationNanos);
+    }
+
+    /**
+     * Returns the number of frames currently held in the buffer.
+     *
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return mTrace.getCount();
+    }
+
+    /**
+     * Discards all recorded frames.
+     */
+    public void clear() {
+        mTrace.clear();
+    }
+
+    /**
+     * Writes the recorded frames to the file in the background, replacing its content. The
+     * frames are copied into a preallocated snapshot first, so recording continues while the file
+     * is written. Only one flush can run at a time.
+     *
+     * @param file the file to write the trace to, e.g. in {@code Context.getFilesDir()}
+     * @return false if a previous flush is still running, in which case nothing is written
+     */
+    public boolean flush(@NonNull final File file) {
+        if (!mFlushing.compareAndSet(false, true)) {
+            return false;
+        }
+
+        mSnapshot.copyFrom(mTrace);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    writeSnapshot(file);
+                } catch (IOException e) {
+                    Log.w(TAG, "failed to write trace to " + file, e);
+                } finally {
+                    mFlushing.set(false);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * Returns whether a flush is currently writing to its file.
+     *
+     * @return whether a flush is running
+     */
+    boolean isFlushing() {
+        return mFlushing.get();
+    }
+
+    private void writeSnapshot(@NonNull File file) throws IOException {
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            mSnapshot.writeTo(out);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Provides a {@link WritableByteChannel} decorator that reports how much was written to a
+ * {@link FabProgress} and starts the final animation once it is closed after everything was
+ * written. A short write or a failed close leaves the progress where it is.
+ * <p/>
+ * The buffers, direct or not, are passed unchanged to the wrapped channel and the progress is
+ * reported in batches.
+ */
+public class ProgressWritableByteChannel implements WritableByteChannel {
+
+    private final WritableByteChannel mChannel;
+    private final ProgressReporter mReporter;
+
+    /**
+     * Constructs a new {@link ProgressWritableByteChannel}.
+     *
+     * @param channel     the channel to write to
+     * @param fabProgress the view to report the progress to
+     * @param totalBytes  the number of bytes that will be written, or a negative value if unknown,
+     *                    in which case only the end is reported
+     */
+    public ProgressWritableByteChannel(@NonNull WritableByteChannel channel,
+                                       @NonNull FabProgress fabProgress, long totalBytes) {
+        mChannel = channel;
+        mReporter = new ProgressReporter(fabProgress, totalBytes);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        final int written = mChannel.write(src);
+        mReporter.onBytesTransferred(written);
+
+        return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+        // like the end of a stream being read, only a complete transfer starts the final animation
+        if (mReporter.isTransferComplete()) {
+            mReporter.onFinished();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
+import android.support.annotation.ColorInt;
+import android.support.annotation.DrawableRes;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+import android.util.TypedValue;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Provides a process-wide cache for the resources every {@link FabProgress} needs: the complete
+ * icons, the background tints per color and the accent color per theme. Icons are loaded without
+ * a theme and kept as {@link Drawable.ConstantState} per resource id, every caller gets its own
+ * mutated copy and applies its theme to it. So theme attributes are resolved for every caller,
+ * while inflating a vector only happens once, no matter how many activities show it or how often
+ * they are recreated. Like the framework's own drawable cache, a state is reloaded only if the
+ * configuration changed in a way the drawable depends on.
+ * <p/>
+ * Can be used from any thread.
+ */
+final class ResourceCache {
+
+    private static final SparseArray<DrawableEntry> sDrawables = new SparseArray<>();
+    private static final SparseArray<ColorStateList> sTints = new SparseArray<>();
+    /**
+     * The accent colors by theme instance, weakly, so that the themes of destroyed activities
+     * are not retained.
+     */
+    private static final Map<Resources.Theme, Integer> sAccentColors = new WeakHashMap<>();
+
+    private ResourceCache() {
+        // class cannot be instantiated
+    }
+
+    /**
+     * Returns the accent color of the context's theme, resolving it only once per theme, e.g.
+     * once for all buttons of an activity.
+     *
+     * @param context the context whose theme to resolve the color from
+     * @return the accent color of the theme
+     */
+    @ColorInt
+    static int getAccentColor(@NonNull Context context) {
+        final Resources.Theme theme = context.getTheme();
+        synchronized (ResourceCache.class) {
+            final Integer color = sAccentColors.get(theme);
+            if (color != null) {
+                return color;
+            }
+        }
+
+        final TypedValue value = new TypedValue();
+        theme.resolveAttribute(R.attr.colorAccent, value, true);
+        synchronized (ResourceCache.class) {
+            sAccentColors.put(theme, value.data);
+        }
+
+        return value.data;
+    }
+
+    /**
+     * Returns the shared single color tint list for the color. Tint lists are immutable, so the
+     * same instance can be used by every view.
+     *
+     * @param color the color of the tint
+     * @return the tint list for the color
+     */
+    @NonNull
+    static ColorStateList getTint(@ColorInt int color) {
+        synchronized (ResourceCache.class) {
+            ColorStateList tint = sTints.get(color);
+            if (tint == null) {
+                tint = ColorStateList.valueOf(color);
+                sTints.put(color, tint);
+            }
+
+            return tint;
+        }
+    }
+
+    /**
+     * Returns a mutated copy of the drawable with the context's theme applied, loading it only if
+     * it is not cached for the context's configuration yet.
+     *
+     * @param context  the context to load the drawable with
+     * @param drawable the resource id of the drawable
+     * @return a new, mutated instance of the drawable
+     */
+    @Nullable
+    static Drawable getDrawable(@NonNull Context context, @DrawableRes int drawable) {
+        final Drawable.ConstantState state = getDrawableState(context, drawable);
+        if (state == null) {
+            return null;
+        }
+
+        final Drawable copy = state.newDrawable(context.getResources()).mutate();
+        if (Utils.isRunningLollipopAndHigher() && copy.canApplyTheme()) {
+            // the state is not themed, resolve its theme attributes for this caller only
+            copy.applyTheme(context.getTheme());
+        }
+        return copy;
+    }
+
+    @Nullable
+    private static Drawable.ConstantState getDrawableState(@NonNull Context context,
+                                                           @DrawableRes int drawable) {
+        final Configuration config = context.getResources().getConfiguration();
+        synchronized (ResourceCache.class) {
+            final DrawableEntry entry = sDrawables.get(drawable);
+            if (entry != null && entry.isValidFor(config)) {
+                return entry.mState;
+            }
+        }
+
+        // load outside of the lock, a concurrent load of the same drawable only wastes some work
+        final Drawable loaded = loadUnthemed(context.getResources(), drawable);
+        final Drawable.ConstantState state = loaded != null ? loaded.getConstantState() : null;
+        if (state == null) {
+            return null;
+        }
+
+        synchronized (ResourceCache.class) {
+            sDrawables.put(drawable, new DrawableEntry(state, config));
+        }
+
+        return state;
+    }
+
+    /**
+     * Loads the drawable without a theme, so that its state can be themed by every caller.
+     *
+     * @param res      the resources to load the drawable from
+     * @param drawable the resource id of the drawable
+     * @return the drawable
+     */
+    @SuppressWarnings("deprecation")
+    @Nullable
+    private static Drawable loadUnthemed(@NonNull Resources res, @DrawableRes int drawable) {
+        return Utils.isRunningLollipopAndHigher()
+                ? res.getDrawable(drawable, null)
+                : res.getDrawable(drawable);
+    }
+
+    /**
+     * Returns whether the drawable is cached for the context's configuration.
+     *
+     * @param context  the context whose configuration to check
+     * @param drawable the resource id of the drawable
+     * @return whether the drawable is cached
+     */
+    static boolean isDrawableCached(@NonNull Context context, @DrawableRes int drawable) {
+        final Configuration config = context.getResources().getConfiguration();
+        synchronized (ResourceCache.class) {
+            final DrawableEntry entry = sDrawables.get(drawable);
+            return entry != null && entry.isValidFor(config);
+        }
+    }
+
+    /**
+     * Removes all drawables, tints and colors from the cache. Views keep the copies they already
+     * got.
+     */
+    static void evictAll() {
+        synchronized (ResourceCache.class) {
+            sDrawables.clear();
+            sTints.clear();
+            sAccentColors.clear();
+        }
+    }
+
+    /**
+     * Loads the drawable on a background thread, if it is not cached yet.
+     *
+     * @param context  the context to load the drawable with
+     * @param drawable the resource id of the drawable
+     */
+    static void warmUp(@NonNull final Context context, @DrawableRes final int drawable) {
+        if (isDrawableCached(context, drawable)) {
+            return;
+        }
+
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                getDrawableState(context, drawable);
+            }
+        });
+    }
+
+    private static final class DrawableEntry {
+        private final Drawable.ConstantState mState;
+        private final Configuration mConfiguration;
+
+        DrawableEntry(@NonNull Drawable.ConstantState state, @NonNull Configuration config) {
+            mState = state;
+            mConfiguration = new Configuration(config);
+        }
+
+        /**
+         * Returns whether the state can be used in the configuration, i.e. none of the
+         * configuration changes since it was loaded affect the drawable.
+         *
+         * @param config the configuration to check
+         * @return whether the state can be used
+         */
+        boolean isValidFor(@NonNull Configuration config) {
+            return (mConfiguration.diff(config) & mState.getChangingConfigurations()) == 0;
+        }
+    }
+}
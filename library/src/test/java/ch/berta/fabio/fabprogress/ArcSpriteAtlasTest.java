@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.graphics.Rect;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ArcSpriteAtlasTest {
+
+    private static final int SIZE = 100;
+    private static final float STROKE_WIDTH = 8;
+    private Context mContext;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = RuntimeEnvironment.application;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ArcSpriteAtlas.evictAll();
+    }
+
+    private ArcSpriteAtlas obtainRendered(int spriteSize, float strokeWidth,
+                                          boolean roundedStroke) {
+        ArcSpriteAtlas.obtain(mContext, spriteSize, strokeWidth, roundedStroke);
+        Robolectric.flushBackgroundThreadScheduler();
+        Robolectric.flushForegroundThreadScheduler();
+        final ArcSpriteAtlas atlas = ArcSpriteAtlas.obtain(mContext, spriteSize, strokeWidth,
+                roundedStroke);
+        assertNotNull(atlas);
+        return atlas;
+    }
+
+    @Test
+    public void obtain_notCached_rendersInBackground() throws Exception {
+        Robolectric.getBackgroundThreadScheduler().pause();
+        try {
+            assertNull(ArcSpriteAtlas.obtain(mContext, SIZE, STROKE_WIDTH, false));
+            assertNull(ArcSpriteAtlas.obtain(mContext, SIZE, STROKE_WIDTH, false));
+        } finally {
+            Robolectric.getBackgroundThreadScheduler().unPause();
+        }
+    }
+
+    @Test
+    public void obtain_sharesAtlasForSameParameters() throws Exception {
+        final ArcSpriteAtlas atlas = obtainRendered(SIZE, STROKE_WIDTH, false);
+
+        assertSame(atlas, obtainRendered(SIZE, STROKE_WIDTH, false));
+        assertNotSame(atlas, obtainRendered(SIZE, STROKE_WIDTH, true));
+        assertNotSame(atlas, obtainRendered(SIZE + 1, STROKE_WIDTH, false));
+    }
+
+    @Test
+    public void evictAll_marksAtlasEvictedAndRendersNewOne() throws Exception {
+        final ArcSpriteAtlas atlas = obtainRendered(SIZE, STROKE_WIDTH, false);
+        ArcSpriteAtlas.evictAll();
+
+        assertTrue(atlas.isEvicted());
+        assertNotSame(atlas, obtainRendered(SIZE, STROKE_WIDTH, false));
+    }
+
+    @Test
+    public void evictAll_whileRendering_dropsAtlas() throws Exception {
+        Robolectric.getBackgroundThreadScheduler().pause();
+        try {
+            ArcSpriteAtlas.obtain(mContext, SIZE, STROKE_WIDTH, false);
+            ArcSpriteAtlas.evictAll();
+        } finally {
+            Robolectric.getBackgroundThreadScheduler().unPause();
+        }
+        Robolectric.flushBackgroundThreadScheduler();
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertNull(ArcSpriteAtlas.obtain(mContext, SIZE, STROKE_WIDTH, false));
+    }
+
+    @Test
+    public void obtain_tooLargeForCache_neverRenders() throws Exception {
+        int tooLarge = SIZE;
+        while (ArcSpriteAtlas.fitsCache(tooLarge)) {
+            tooLarge += SIZE;
+        }
+
+        assertNull(ArcSpriteAtlas.obtain(mContext, tooLarge, STROKE_WIDTH, false));
+        Robolectric.flushBackgroundThreadScheduler();
+        Robolectric.flushForegroundThreadScheduler();
+        assertNull(ArcSpriteAtlas.obtain(mContext, tooLarge, STROKE_WIDTH, false));
+    }
+
+    @Test
+    public void obtain_overCacheSize_evictsLeastRecentlyUsed() throws Exception {
+        int size = SIZE;
+        while (ArcSpriteAtlas.getByteCount(size + 1) * 2 <= ArcSpriteAtlas.MAX_CACHE_BYTES) {
+            size += SIZE;
+        }
+        final ArcSpriteAtlas first = obtainRendered(size, STROKE_WIDTH, false);
+        final ArcSpriteAtlas second = obtainRendered(size + 1, STROKE_WIDTH, false);
+
+        assertTrue(first.isEvicted());
+        assertFalse(second.isEvicted());
+        assertSame(second, obtainRendered(size + 1, STROKE_WIDTH, false));
+    }
+
+    @Test
+    public void getSpriteBounds_leavesPaddingBetweenSprites() throws Exception {
+        final ArcSpriteAtlas atlas = obtainRendered(SIZE, STROKE_WIDTH, false);
+        final Rect first = new Rect();
+        final Rect second = new Rect();
+
+        atlas.getSpriteBounds(ArcSpriteAtlas.SWEEP_STEP, first);
+        atlas.getSpriteBounds(ArcSpriteAtlas.SWEEP_STEP * 2, second);
+        assertEquals(first.top, second.top);
+        assertEquals(2 * ArcSpriteAtlas.CELL_PADDING, second.left - first.right);
+    }
+
+    @Test
+    public void getSpriteBounds_roundsSweepDown() throws Exception {
+        final ArcSpriteAtlas atlas = obtainRendered(SIZE, STROKE_WIDTH, false);
+        final Rect lower = new Rect();
+        final Rect sprite = new Rect();
+
+        atlas.getSpriteBounds(ArcSpriteAtlas.SWEEP_STEP, lower);
+        atlas.getSpriteBounds(ArcSpriteAtlas.SWEEP_STEP * 2 - 0.1f, sprite);
+        assertEquals(lower, sprite);
+        assertEquals(SIZE, sprite.width());
+        assertEquals(SIZE, sprite.height());
+    }
+
+    @Test
+    public void getSpriteBounds_clampsToFullCircle() throws Exception {
+        final ArcSpriteAtlas atlas = obtainRendered(SIZE, STROKE_WIDTH, false);
+        final Rect fullCircle = new Rect();
+        final Rect sprite = new Rect();
+
+        atlas.getSpriteBounds(360, fullCircle);
+        atlas.getSpriteBounds(380, sprite);
+        assertEquals(fullCircle, sprite);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.design.widget.FloatingActionButton;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+/**
+ * Measures the per-frame view path of {@link FabProgress} hosted in Robolectric. Reports the
+ * time and the bytes allocated per operation, run with {@code ./gradlew test -Pbenchmark}.
+ * <p/>
+ * Robolectric does not rasterize, so the numbers show the overhead of the library code itself
+ * and are only meaningful relative to each other and to earlier runs.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int ITERATIONS = 20000;
+    private static final int INFLATE_ITERATIONS = 2000;
+    private static final long FRAME_TIME_NANOS = 16666667;
+    private static final int SIZE = 168;
+    private ContextThemeWrapper mContext;
+    private FabProgress mFabProgress;
+    private Canvas mCanvas;
+    private long mFrameTime;
+
+    private static void measure(String name, int iterations, Runnable operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            operation.run();
+        }
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        final long timeBefore = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            operation.run();
+        }
+        final long time = System.nanoTime() - timeBefore;
+        final long bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        System.out.println(String.format(Locale.US, "%-20s %10.1f ns/op %10.1f bytes/op", name,
+                (double) time / iterations, (double) bytes / iterations));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light);
+        mFabProgress = new FabProgress(mContext, null);
+        mFabProgress.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        mFabProgress.layout(0, 0, SIZE, SIZE);
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    private void nextFrame() {
+        mFrameTime += FRAME_TIME_NANOS;
+        mFabProgress.getArcDrawable().doFrame(mFrameTime);
+    }
+
+    /**
+     * Construction of a {@link FabProgress} that never shows a progress, compare with
+     * {@link #inflateFloatingActionButton()}.
+     */
+    @Test
+    public void inflate() throws Exception {
+        measure("inflate", INFLATE_ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                new FabProgress(mContext, null);
+            }
+        });
+    }
+
+    @Test
+    public void inflateFloatingActionButton() throws Exception {
+        measure("inflateFab", INFLATE_ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                new FloatingActionButton(mContext, null);
+            }
+        });
+    }
+
+    @Test
+    public void onDraw() throws Exception {
+        mFabProgress.startProgress();
+        nextFrame();
+
+        measure("onDraw", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.onDraw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void onDrawSpriteAtlas() throws Exception {
+        mFabProgress.setSpriteAtlasEnabled(true);
+        mFabProgress.startProgress();
+        nextFrame();
+        // the first draw only starts rendering the atlas
+        mFabProgress.onDraw(mCanvas);
+        Robolectric.flushBackgroundThreadScheduler();
+        Robolectric.flushForegroundThreadScheduler();
+
+        measure("onDrawSpriteAtlas", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.onDraw(mCanvas);
+            }
+        });
+    }
+
+    /**
+     * A whole frame of the view while the circle spins, with the button body blitted from its
+     * layer, compare with {@link #drawWithoutBodyLayer()}.
+     */
+    @Test
+    public void draw() throws Exception {
+        mFabProgress.startProgress();
+        nextFrame();
+
+        measure("draw", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void drawWithoutBodyLayer() throws Exception {
+        mFabProgress.setBodyLayerEnabled(false);
+        mFabProgress.startProgress();
+        nextFrame();
+
+        measure("drawNoBodyLayer", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.draw(mCanvas);
+            }
+        });
+    }
+
+    @Test
+    public void frameTick() throws Exception {
+        mFabProgress.startProgress();
+
+        measure("frameTick", ITERATIONS, new Runnable() {
+            @Override
+            public void run() {
+                nextFrame();
+            }
+        });
+    }
+
+    @Test
+    public void fullCycle() throws Exception {
+        // spin cycle plus final animation, rounded up to whole frames
+        final int frames = (int) ((ArcTimeline.CYCLE_DURATION + ArcTimeline.COMPLETE_DURATION)
+                * 1000000 / FRAME_TIME_NANOS) + 1;
+
+        measure("fullCycle", ITERATIONS / frames, new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.startProgress();
+                nextFrame();
+                mFabProgress.startProgressFinalAnimation();
+                for (int i = 0; i < frames; i++) {
+                    nextFrame();
+                }
+                mFabProgress.stopProgress();
+            }
+        });
+    }
+}
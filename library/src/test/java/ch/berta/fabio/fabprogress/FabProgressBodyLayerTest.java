@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.v4.content.ContextCompat;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressBodyLayerTest {
+
+    private static final int SIZE = 100;
+    private static final long FRAME_TIME_NANOS = 16666667;
+    private CountingFabProgress mFabProgress;
+    private Canvas mCanvas;
+    private long mFrameTime;
+
+    @Before
+    public void setUp() throws Exception {
+        mFabProgress = new CountingFabProgress(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light));
+        mFabProgress.measure(View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(SIZE, View.MeasureSpec.EXACTLY));
+        mFabProgress.layout(0, 0, SIZE, SIZE);
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    private void drawFrames(int count) {
+        for (int i = 0; i < count; i++) {
+            mFrameTime += FRAME_TIME_NANOS;
+            mFabProgress.getArcDrawable().doFrame(mFrameTime);
+            mFabProgress.draw(mCanvas);
+        }
+    }
+
+    @Test
+    public void spinning_drawsBodyOnce() {
+        mFabProgress.startProgress();
+        drawFrames(30);
+
+        assertEquals(1, mFabProgress.mBodyDraws);
+        assertTrue(mFabProgress.isBodyLayerValid());
+    }
+
+    @Test
+    public void iconChange_redrawsBody() {
+        mFabProgress.startProgress();
+        drawFrames(2);
+        mFabProgress.setImageDrawable(ContextCompat.getDrawable(RuntimeEnvironment.application,
+                R.drawable.ic_backup_white_24dp));
+        drawFrames(2);
+
+        assertEquals(2, mFabProgress.mBodyDraws);
+    }
+
+    @Test
+    public void stateChange_redrawsBody() {
+        mFabProgress.startProgress();
+        drawFrames(2);
+        mFabProgress.setPressed(true);
+        drawFrames(2);
+
+        assertEquals(2, mFabProgress.mBodyDraws);
+    }
+
+    @Test
+    public void stop_releasesLayer() {
+        mFabProgress.startProgress();
+        drawFrames(2);
+        mFabProgress.stopProgress();
+        mFabProgress.draw(mCanvas);
+
+        assertFalse(mFabProgress.isBodyLayerValid());
+    }
+
+    @Test
+    public void disabled_drawsBodyEveryFrame() {
+        mFabProgress.setBodyLayerEnabled(false);
+        mFabProgress.startProgress();
+        drawFrames(10);
+
+        assertEquals(10, mFabProgress.mBodyDraws);
+        assertFalse(mFabProgress.isBodyLayerValid());
+    }
+
+    @Test
+    public void hardwareAccelerated_drawsBodyEveryFrame() {
+        mFabProgress.mHardwareAccelerated = true;
+        mFabProgress.startProgress();
+        drawFrames(10);
+
+        assertEquals(10, mFabProgress.mBodyDraws);
+        assertFalse(mFabProgress.isBodyLayerValid());
+    }
+
+    private static class CountingFabProgress extends FabProgress {
+
+        private int mBodyDraws;
+        private boolean mHardwareAccelerated;
+
+        CountingFabProgress(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean isHardwareAccelerated() {
+            return mHardwareAccelerated;
+        }
+
+        @Override
+        protected void onDraw(Canvas canvas) {
+            mBodyDraws++;
+            super.onDraw(canvas);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressControlTest {
+
+    private static final long SEED = 20151208;
+    private static final int OPERATIONS = 20000;
+    private FabProgressFixture mFixture;
+    private FabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFabProgress = mFixture.getFabProgress();
+        mFabProgress.setReusable(true);
+    }
+
+    @Test
+    public void startProgress_whileSpinning_doesNotRestart() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION / 2);
+        final long playTime = mFabProgress.getArcDrawable().getPlayTime();
+
+        for (int i = 0; i < 100; i++) {
+            mFabProgress.startProgress();
+        }
+        assertEquals(playTime, mFabProgress.getArcDrawable().getPlayTime());
+        assertTrue(mFabProgress.getArcDrawable().isReceivingFrames());
+    }
+
+    @Test
+    public void stopAndStartProgress_withinFrame_continuesTimeline() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION / 2);
+        final long playTime = mFabProgress.getArcDrawable().getPlayTime();
+
+        mFabProgress.stopProgress();
+        mFabProgress.startProgress();
+        assertEquals(playTime, mFabProgress.getArcDrawable().getPlayTime());
+
+        mFixture.nextFrame();
+        assertTrue(mFabProgress.getArcDrawable().getPlayTime() >= playTime);
+    }
+
+    @Test
+    public void stopAndStartProgress_acrossFrames_startsOver() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION / 2);
+
+        mFabProgress.stopProgress();
+        // what the frame clock does on the next frame
+        mFabProgress.getArcDrawable().cancelResume();
+        mFabProgress.startProgress();
+        assertEquals(0, mFabProgress.getArcDrawable().getPlayTime());
+    }
+
+    @Test
+    public void startProgress_withPendingFinalAnimation_keepsFinalAnimation() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION / 2);
+        mFabProgress.startProgressFinalAnimation();
+        mFixture.nextFrame();
+        final long playTime = mFabProgress.getArcDrawable().getPlayTime();
+        final long completeStartPlayTime = mFabProgress.getArcDrawable().getCompleteStartPlayTime();
+
+        mFabProgress.startProgress();
+        assertEquals(playTime, mFabProgress.getArcDrawable().getPlayTime());
+        assertEquals(completeStartPlayTime,
+                mFabProgress.getArcDrawable().getCompleteStartPlayTime());
+
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION + ArcTimeline.COMPLETE_DURATION);
+        assertFalse(mFabProgress.getArcDrawable().isRunning());
+    }
+
+    @Test
+    public void startProgressFinalAnimation_repeated_completesOnce() throws Exception {
+        final int[] calls = new int[1];
+        mFabProgress.setProgressFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                calls[0]++;
+            }
+        });
+        mFabProgress.startProgress();
+        mFixture.nextFrame();
+        for (int i = 0; i < 100; i++) {
+            mFabProgress.startProgressFinalAnimation();
+            mFixture.nextFrame();
+        }
+
+        mFixture.playFrames(ArcTimeline.CYCLE_DURATION + ArcTimeline.COMPLETE_DURATION + 500);
+        assertEquals(1, calls[0]);
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+    }
+
+    /**
+     * Fires random control calls at the view, interleaved with frames, and checks after every
+     * step that the circle only receives frames while it runs and that a redundant start never
+     * moves its timeline, neither while spinning nor while completing.
+     */
+    @Test
+    public void randomCallStorm_keepsFramesConsistent() throws Exception {
+        final Random random = new Random(SEED);
+        for (int i = 0; i < OPERATIONS; i++) {
+            final ProgressArcDrawable before = mFabProgress.getArcDrawable();
+            final long playTime = before != null ? before.getPlayTime() : 0;
+            final long completeStartPlayTime = before != null
+                    ? before.getCompleteStartPlayTime() : -1;
+            final boolean wasSpinning = before != null && before.isRunning()
+                    && (Float.isNaN(before.getDeterminateProgress())
+                    || completeStartPlayTime >= 0);
+
+            switch (random.nextInt(7)) {
+                case 0:
+                    mFabProgress.startProgress();
+                    if (wasSpinning) {
+                        assertEquals(playTime, mFabProgress.getArcDrawable().getPlayTime());
+                        assertEquals(completeStartPlayTime,
+                                mFabProgress.getArcDrawable().getCompleteStartPlayTime());
+                    }
+                    break;
+                case 1:
+                    mFabProgress.stopProgress();
+                    break;
+                case 2:
+                    mFabProgress.startProgressFinalAnimation();
+                    break;
+                case 3:
+                    mFabProgress.setProgress(random.nextFloat());
+                    break;
+                case 4:
+                    mFixture.runReset();
+                    break;
+                default:
+                    mFixture.nextFrame();
+                    break;
+            }
+
+            final ProgressArcDrawable arcDrawable = mFabProgress.getArcDrawable();
+            if (arcDrawable != null && arcDrawable.isReceivingFrames()) {
+                assertTrue(arcDrawable.isRunning());
+            }
+        }
+
+        mFabProgress.stopProgress();
+        mFixture.playFrames(ArcTimeline.COMPLETE_DURATION);
+        assertFalse(mFabProgress.getArcDrawable().isRunning());
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+        assertFalse(mFabProgress.isIconFading());
+    }
+}
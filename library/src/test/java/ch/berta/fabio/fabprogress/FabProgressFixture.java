@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.app.Activity;
+import android.view.ContextThemeWrapper;
+import android.widget.FrameLayout;
+
+import org.robolectric.Robolectric;
+import org.robolectric.util.ActivityController;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+/**
+ * Shows a {@link FabProgress} in an activity for the view tests and plays its frames directly,
+ * in the same order as the {@link FrameClock}, the circle first and then the icon fade.
+ */
+final class FabProgressFixture {
+
+    static final long FRAME_TIME_NANOS = ProgressArcDrawableFixture.FRAME_TIME_NANOS;
+    static final long NANOS_PER_MILLI = ProgressArcDrawableFixture.NANOS_PER_MILLI;
+    /**
+     * Longer than the delay after which a reusable view resets.
+     */
+    static final long RESET_DELAY = 5000;
+    private final ActivityController<Activity> mController;
+    private final Activity mActivity;
+    private FrameLayout mContainer;
+    private FabProgress mFabProgress;
+    private long mFrameTime;
+
+    private FabProgressFixture() {
+        mController = Robolectric.buildActivity(Activity.class).setup();
+        mActivity = mController.get();
+        replaceFabProgress();
+    }
+
+    /**
+     * Creates an activity that shows a single view, its frames start at a frame time of 0.
+     *
+     * @return the new fixture
+     */
+    static FabProgressFixture create() {
+        return new FabProgressFixture();
+    }
+
+    Activity getActivity() {
+        return mActivity;
+    }
+
+    /**
+     * Pauses, stops and destroys the activity, the views stay attached.
+     */
+    void destroyActivity() {
+        mController.pause().stop().destroy();
+    }
+
+    /**
+     * Returns the view the frames are played on.
+     *
+     * @return the view
+     */
+    FabProgress getFabProgress() {
+        return mFabProgress;
+    }
+
+    long getFrameTime() {
+        return mFrameTime;
+    }
+
+    /**
+     * Adds another view next to the shown ones, e.g. a second row of a list. Frames are still
+     * only played on the first view.
+     *
+     * @return the new view
+     */
+    FabProgress addFabProgress() {
+        final FabProgress fabProgress = newFabProgress();
+        mContainer.addView(fabProgress);
+        return fabProgress;
+    }
+
+    /**
+     * Replaces the shown views with a new one, e.g. after the activity was recreated, and plays
+     * the following frames on it.
+     *
+     * @return the new view
+     */
+    FabProgress replaceFabProgress() {
+        mContainer = new FrameLayout(mActivity);
+        mFabProgress = newFabProgress();
+        mContainer.addView(mFabProgress);
+        mActivity.setContentView(mContainer);
+        return mFabProgress;
+    }
+
+    private FabProgress newFabProgress() {
+        return new FabProgress(
+                new ContextThemeWrapper(mActivity, R.style.Theme_AppCompat_Light), null);
+    }
+
+    /**
+     * Plays the next frame of the circle, if the view has one, and of the icon fade.
+     */
+    void nextFrame() {
+        mFrameTime += FRAME_TIME_NANOS;
+        if (mFabProgress.getArcDrawable() != null) {
+            mFabProgress.getArcDrawable().doFrame(mFrameTime);
+        }
+        mFabProgress.doFadeFrame(mFrameTime);
+    }
+
+    /**
+     * Plays frames of the circle and the icon fade for the given duration.
+     *
+     * @param durationMillis the duration in milliseconds
+     */
+    void playFrames(long durationMillis) {
+        final long end = mFrameTime + durationMillis * NANOS_PER_MILLI;
+        while (mFrameTime < end) {
+            nextFrame();
+        }
+    }
+
+    /**
+     * Plays a frame of the circle only at the current frame time, e.g. the first frame after a
+     * start.
+     */
+    void doArcFrame() {
+        mFabProgress.getArcDrawable().doFrame(mFrameTime);
+    }
+
+    /**
+     * Plays frames of the circle only for the given duration, the icon fade does not move.
+     *
+     * @param durationMillis the duration in milliseconds
+     */
+    void playArcFrames(long durationMillis) {
+        final long end = mFrameTime + durationMillis * NANOS_PER_MILLI;
+        while (mFrameTime < end) {
+            mFrameTime += FRAME_TIME_NANOS;
+            mFabProgress.getArcDrawable().doFrame(mFrameTime);
+        }
+    }
+
+    /**
+     * Starts the progress and plays frames of the circle only until its final animation after
+     * the first cycle is complete. The icon fade is started but does not move yet.
+     */
+    void playArcUntilComplete() {
+        mFabProgress.startProgress();
+        doArcFrame();
+        mFabProgress.startProgressFinalAnimation();
+        playArcFrames(ArcTimeline.CYCLE_DURATION + ArcTimeline.COMPLETE_DURATION
+                + 2 * FRAME_TIME_NANOS / NANOS_PER_MILLI);
+    }
+
+    /**
+     * Plays the next frame of the icon fade only.
+     */
+    void nextFadeFrame() {
+        mFrameTime += FRAME_TIME_NANOS;
+        mFabProgress.doFadeFrame(mFrameTime);
+    }
+
+    /**
+     * Plays frames of the icon fade only until it ends.
+     */
+    void playFade() {
+        while (mFabProgress.isIconFading()) {
+            nextFadeFrame();
+        }
+    }
+
+    /**
+     * Runs the reset a reusable view posts after its final animation.
+     */
+    void runReset() {
+        Robolectric.getForegroundThreadScheduler().advanceBy(RESET_DELAY);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressIconCrossfadeTest {
+
+    private static final long COMPLETE_DURATION = 50;
+    private FabProgressFixture mFixture;
+    private FabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFabProgress = mFixture.getFabProgress();
+    }
+
+    @Test
+    public void crossfade_doesNotChangeViewProperties() throws Exception {
+        mFixture.playArcUntilComplete();
+        assertTrue(mFabProgress.isIconFading());
+
+        while (mFabProgress.isIconFading()) {
+            mFixture.nextFadeFrame();
+            assertEquals(1f, mFabProgress.getAlpha(), 0f);
+            assertEquals(1f, mFabProgress.getScaleX(), 0f);
+            assertEquals(1f, mFabProgress.getScaleY(), 0f);
+        }
+    }
+
+    @Test
+    public void crossfade_commitsIconAndTintAtEnd() throws Exception {
+        final Drawable fabIcon = mFabProgress.getDrawable();
+        final ColorStateList fabTint = mFabProgress.getBackgroundTintList();
+        mFixture.playArcUntilComplete();
+
+        mFixture.nextFadeFrame();
+        mFixture.nextFadeFrame();
+        assertTrue(mFabProgress.isIconFading());
+        assertTrue(mFabProgress.getDrawable() instanceof IconCrossfadeDrawable);
+        assertSame(fabTint, mFabProgress.getBackgroundTintList());
+
+        mFixture.playFade();
+        assertFalse(mFabProgress.getDrawable() instanceof IconCrossfadeDrawable);
+        assertNotSame(fabIcon, mFabProgress.getDrawable());
+        assertNotSame(fabTint, mFabProgress.getBackgroundTintList());
+    }
+
+    @Test
+    public void detach_duringCrossfade_commitsTargetIcon() throws Exception {
+        final Drawable fabIcon = mFabProgress.getDrawable();
+        mFixture.playArcUntilComplete();
+        mFixture.nextFadeFrame();
+        mFixture.nextFadeFrame();
+
+        ((ViewGroup) mFabProgress.getParent()).removeView(mFabProgress);
+        assertFalse(mFabProgress.isIconFading());
+        assertFalse(mFabProgress.getDrawable() instanceof IconCrossfadeDrawable);
+        assertNotSame(fabIcon, mFabProgress.getDrawable());
+    }
+
+    @Test
+    public void complete_duringReverseCrossfade_fadesFromTargetIcon() throws Exception {
+        mFabProgress.setReusable(true);
+        mFixture.playArcUntilComplete();
+        mFixture.playFade();
+        final Drawable completeIcon = mFabProgress.getDrawable();
+        mFixture.runReset();
+        assertTrue(mFabProgress.isIconFading());
+        mFixture.nextFadeFrame();
+
+        // restart and complete within the reverse fade
+        mFabProgress.setCompleteImmediately(true);
+        mFabProgress.setCompleteDuration(COMPLETE_DURATION);
+        mFabProgress.startProgress();
+        mFixture.doArcFrame();
+        mFabProgress.startProgressFinalAnimation();
+        mFixture.playArcFrames(COMPLETE_DURATION
+                + 2 * FabProgressFixture.FRAME_TIME_NANOS / FabProgressFixture.NANOS_PER_MILLI);
+        assertTrue(mFabProgress.isIconFading());
+
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(mFabProgress.getWidth() + 1,
+                mFabProgress.getHeight() + 1, Bitmap.Config.ARGB_8888));
+        while (mFabProgress.isIconFading()) {
+            mFixture.nextFadeFrame();
+            mFabProgress.draw(canvas);
+        }
+        assertSame(completeIcon, mFabProgress.getDrawable());
+    }
+
+    @Test
+    public void crossfadeDrawable_restoresIconAlpha() throws Exception {
+        final Drawable from = new ColorDrawable(Color.RED);
+        from.setAlpha(128);
+        final Drawable to = new ColorDrawable(Color.BLUE);
+        final IconCrossfadeDrawable crossfade = new IconCrossfadeDrawable();
+        crossfade.setIcons(from, to);
+        crossfade.setBounds(0, 0, 10, 10);
+
+        crossfade.setFraction(0.5f);
+        crossfade.draw(new Canvas(Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888)));
+        assertEquals(128, from.getAlpha());
+        assertEquals(255, to.getAlpha());
+    }
+
+    @Test
+    public void crossfadeDrawable_takesSizeOfTargetIcon() throws Exception {
+        final ShapeDrawable from = new ShapeDrawable();
+        from.setIntrinsicWidth(24);
+        from.setIntrinsicHeight(24);
+        final ShapeDrawable to = new ShapeDrawable();
+        to.setIntrinsicWidth(36);
+        to.setIntrinsicHeight(18);
+        final IconCrossfadeDrawable crossfade = new IconCrossfadeDrawable();
+        crossfade.setIcons(from, to);
+
+        assertEquals(36, crossfade.getIntrinsicWidth());
+        assertEquals(18, crossfade.getIntrinsicHeight());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Parcelable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressInstanceStateTest {
+
+    private static final long FRAME_TIME_MILLIS =
+            FabProgressFixture.FRAME_TIME_NANOS / FabProgressFixture.NANOS_PER_MILLI;
+    private FabProgressFixture mFixture;
+    private FabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFabProgress = mFixture.getFabProgress();
+    }
+
+    private FabProgress recreate() {
+        final Parcelable state = mFabProgress.onSaveInstanceState();
+        final FabProgress recreated = mFixture.replaceFabProgress();
+        recreated.onRestoreInstanceState(state);
+        return recreated;
+    }
+
+    @Test
+    public void restore_spinning_continuesTimeline() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playArcFrames(ArcTimeline.CYCLE_DURATION / 2);
+        final long playTime = mFabProgress.getArcDrawable().getPlayTime();
+
+        final FabProgress recreated = recreate();
+        assertTrue(recreated.getArcDrawable().isRunning());
+        assertEquals(playTime, recreated.getArcDrawable().getPlayTime());
+
+        // the first frame continues from the saved play time
+        mFixture.playArcFrames(1);
+        assertTrue(recreated.getArcDrawable().getPlayTime() >= playTime);
+    }
+
+    @Test
+    public void restore_pendingFinalAnimation_completesAtSameCycleEnd() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.playArcFrames(ArcTimeline.CYCLE_DURATION / 2);
+        mFabProgress.startProgressFinalAnimation();
+        mFixture.playArcFrames(1);
+        final long completeStart = mFabProgress.getArcDrawable().getCompleteStartPlayTime();
+
+        final FabProgress recreated = recreate();
+        assertEquals(completeStart, recreated.getArcDrawable().getCompleteStartPlayTime());
+
+        mFixture.playArcFrames(completeStart - recreated.getArcDrawable().getPlayTime()
+                + ArcTimeline.COMPLETE_DURATION + 2 * FRAME_TIME_MILLIS);
+        assertFalse(recreated.getArcDrawable().isRunning());
+        assertTrue(recreated.isIconFading());
+    }
+
+    @Test
+    public void restore_runningFinalAnimation_continuesFinalAnimation() throws Exception {
+        mFabProgress.setCompleteImmediately(true);
+        mFabProgress.startProgress();
+        mFixture.playArcFrames(ArcTimeline.CYCLE_DURATION / 2);
+        mFabProgress.startProgressFinalAnimation();
+        mFixture.playArcFrames(ArcTimeline.COMPLETE_DURATION / 2);
+        final long completeStart = mFabProgress.getArcDrawable().getCompleteStartPlayTime();
+        final long playTime = mFabProgress.getArcDrawable().getPlayTime();
+
+        final FabProgress recreated = recreate();
+        assertEquals(completeStart, recreated.getArcDrawable().getCompleteStartPlayTime());
+        assertEquals(playTime, recreated.getArcDrawable().getPlayTime());
+
+        mFixture.playArcFrames(ArcTimeline.COMPLETE_DURATION / 2 + 2 * FRAME_TIME_MILLIS);
+        assertFalse(recreated.getArcDrawable().isRunning());
+    }
+
+    @Test
+    public void restore_complete_showsCompleteTint() throws Exception {
+        mFabProgress.setCompleteImmediately(true);
+        mFabProgress.startProgress();
+        mFabProgress.startProgressFinalAnimation();
+        mFixture.playArcFrames(ArcTimeline.COMPLETE_DURATION + 100);
+        mFixture.playFade();
+
+        final FabProgress recreated = recreate();
+        assertFalse(recreated.isIconFading());
+        assertSame(mFabProgress.getBackgroundTintList(), recreated.getBackgroundTintList());
+    }
+
+    @Test
+    public void restore_idle_keepsIconAndTint() throws Exception {
+        final Parcelable state = mFabProgress.onSaveInstanceState();
+        final FabProgress recreated = mFixture.replaceFabProgress();
+        // e.g. set in onCreate() before the state is restored
+        final Drawable icon = new ColorDrawable(Color.RED);
+        final ColorStateList tint = ColorStateList.valueOf(Color.BLUE);
+        recreated.setImageDrawable(icon);
+        recreated.setBackgroundTintList(tint);
+
+        recreated.onRestoreInstanceState(state);
+
+        assertSame(icon, recreated.getDrawable());
+        assertSame(tint, recreated.getBackgroundTintList());
+        assertNull(recreated.getArcDrawable());
+    }
+}
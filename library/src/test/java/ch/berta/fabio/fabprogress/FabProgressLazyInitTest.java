@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressLazyInitTest {
+
+    private FabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFabProgress = new FabProgress(new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light), null);
+    }
+
+    @Test
+    public void construction_createsNoProgress() throws Exception {
+        assertNull(mFabProgress.getArcDrawable());
+    }
+
+    @Test
+    public void startProgress_createsArcDrawableOnce() throws Exception {
+        mFabProgress.startProgress();
+        final ProgressArcDrawable arcDrawable = mFabProgress.getArcDrawable();
+        assertNotNull(arcDrawable);
+        assertTrue(arcDrawable.isRunning());
+
+        mFabProgress.stopProgress();
+        mFabProgress.startProgress();
+        assertSame(arcDrawable, mFabProgress.getArcDrawable());
+    }
+
+    @Test
+    public void setProgressFromWorker_attachesArcDrawableOnMainThread() throws Exception {
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                mFabProgress.setProgress(0.5f);
+            }
+        });
+        worker.start();
+        worker.join();
+
+        final ProgressArcDrawable arcDrawable = mFabProgress.getArcDrawable();
+        assertNotNull(arcDrawable);
+        Robolectric.flushForegroundThreadScheduler();
+        assertSame(mFabProgress, arcDrawable.getCallback());
+        assertTrue(arcDrawable.isRunning());
+    }
+}
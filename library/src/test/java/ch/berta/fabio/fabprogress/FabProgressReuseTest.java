@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.res.ColorStateList;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressReuseTest {
+
+    private static final int CYCLES = 5;
+    private static final int WARM_UP_CYCLES = 3;
+    /**
+     * The size of the smallest object on the JVM, an allocation per frame costs at least this.
+     */
+    private static final int MIN_OBJECT_BYTES = 16;
+    private FabProgressFixture mFixture;
+    private FabProgress mFabProgress;
+    private int mFinalAnimationCalls;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFabProgress = mFixture.getFabProgress();
+        mFabProgress.setReusable(true);
+        mFabProgress.setProgressFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                mFinalAnimationCalls++;
+            }
+        });
+    }
+
+    @Test
+    public void reuseCycle_reusesIconsAndTints() throws Exception {
+        final Drawable fabIcon = mFabProgress.getDrawable();
+        ColorStateList completeTint = null;
+        ColorStateList resetTint = null;
+
+        for (int i = 0; i < CYCLES; i++) {
+            mFixture.playArcUntilComplete();
+            mFixture.playFade();
+            if (completeTint == null) {
+                completeTint = mFabProgress.getBackgroundTintList();
+            }
+            assertSame(completeTint, mFabProgress.getBackgroundTintList());
+            assertNotSame(fabIcon, mFabProgress.getDrawable());
+
+            mFixture.runReset();
+            mFixture.playFade();
+            if (resetTint == null) {
+                resetTint = mFabProgress.getBackgroundTintList();
+            }
+            assertSame(resetTint, mFabProgress.getBackgroundTintList());
+            assertSame(fabIcon, mFabProgress.getDrawable());
+        }
+
+        assertEquals(CYCLES, mFinalAnimationCalls);
+        assertEquals(1f, mFabProgress.getAlpha(), 0f);
+        assertEquals(1f, mFabProgress.getScaleX(), 0f);
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+    }
+
+    /**
+     * Measures the bytes allocated while the frames of the circle and the fades play, the same
+     * way as the benchmarks. Robolectric's shadows allocate a little per cycle, e.g. to post the
+     * reset, so the bound is less than one object per frame rather than zero.
+     */
+    @Test
+    public void reuseCycle_doesNotAllocatePerFrame() throws Exception {
+        for (int i = 0; i < WARM_UP_CYCLES; i++) {
+            mFixture.playArcUntilComplete();
+            mFixture.playFade();
+            mFixture.runReset();
+            mFixture.playFade();
+        }
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long startFrameTime = mFixture.getFrameTime();
+        long bytes = 0;
+        for (int i = 0; i < CYCLES; i++) {
+            long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            mFixture.playArcUntilComplete();
+            mFixture.playFade();
+            bytes += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+            // the reset only runs through the scheduler, the fade it starts is measured
+            mFixture.runReset();
+            bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            mFixture.playFade();
+            bytes += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+        }
+        final long frames =
+                (mFixture.getFrameTime() - startFrameTime) / FabProgressFixture.FRAME_TIME_NANOS;
+
+        assertTrue(bytes + " bytes allocated in " + frames + " frames",
+                bytes < frames * MIN_OBJECT_BYTES);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.app.Activity;
+import android.graphics.drawable.Drawable;
+import android.view.ViewGroup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FabProgressTeardownTest {
+
+    private static final long FADES_DURATION = 500;
+    private static final int GC_ATTEMPTS = 20;
+    private static final long GC_WAIT = 10;
+    private FabProgressFixture mFixture;
+    private FabProgress mFabProgress;
+    private int mFinalAnimationCalls;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFabProgress = mFixture.getFabProgress();
+        mFabProgress.setReusable(true);
+        mFabProgress.setProgressFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                mFinalAnimationCalls++;
+            }
+        });
+    }
+
+    private void detach() {
+        ((ViewGroup) mFabProgress.getParent()).removeView(mFabProgress);
+    }
+
+    /**
+     * Runs a spinning button in its own activity and destroys it. Returns weak references only,
+     * so that the test itself holds on to nothing.
+     */
+    private List<WeakReference<Object>> spinAndDestroyActivity() {
+        final FabProgressFixture fixture = FabProgressFixture.create();
+        final Activity activity = fixture.getActivity();
+        final FabProgress fabProgress = fixture.getFabProgress();
+        // watches the system settings through a process-wide singleton
+        fabProgress.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_AUTO);
+        fabProgress.startProgress();
+        fixture.doArcFrame();
+
+        fixture.destroyActivity();
+        // like the framework does with the window of a destroyed activity
+        activity.getWindowManager().removeViewImmediate(activity.getWindow().getDecorView());
+        fixture.runReset();
+
+        return Arrays.asList(new WeakReference<Object>(activity),
+                new WeakReference<Object>(fabProgress));
+    }
+
+    private static boolean isCollected(List<WeakReference<Object>> references) {
+        for (WeakReference<Object> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Test
+    public void destroyedActivity_isNotRetained() throws Exception {
+        final List<WeakReference<Object>> references = spinAndDestroyActivity();
+
+        for (int i = 0; i < GC_ATTEMPTS && !isCollected(references); i++) {
+            System.gc();
+            System.runFinalization();
+            Thread.sleep(GC_WAIT);
+        }
+
+        assertNull("activity is retained", references.get(0).get());
+        assertNull("view is retained", references.get(1).get());
+    }
+
+    @Test
+    public void detachDuringIconFade_dropsCallbacks() throws Exception {
+        mFixture.playArcUntilComplete();
+
+        detach();
+        Robolectric.getForegroundThreadScheduler().advanceBy(FADES_DURATION);
+        mFixture.runReset();
+
+        assertEquals(0, mFinalAnimationCalls);
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+        assertEquals(1f, mFabProgress.getAlpha(), 0f);
+        assertEquals(1f, mFabProgress.getScaleX(), 0f);
+        assertEquals(1f, mFabProgress.getScaleY(), 0f);
+    }
+
+    @Test
+    public void destroyWithPendingReset_dropsReset() throws Exception {
+        mFixture.playArcUntilComplete();
+        Robolectric.getForegroundThreadScheduler().advanceBy(FADES_DURATION);
+        assertEquals(1, mFinalAnimationCalls);
+        final Drawable completeIcon = mFabProgress.getDrawable();
+
+        mFixture.destroyActivity();
+        detach();
+        mFixture.runReset();
+
+        assertSame(completeIcon, mFabProgress.getDrawable());
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+    }
+
+    @Test
+    public void detachWhileSpinning_releasesFrameClock() throws Exception {
+        mFabProgress.startProgress();
+        mFixture.doArcFrame();
+
+        detach();
+
+        assertFalse(mFabProgress.getArcDrawable().isReceivingFrames());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class FrameClockTest {
+
+    private static final long FRAME_TIME_NANOS = 16666667;
+    private FrameClock mFrameClock;
+    private final ArrayList<RecordingListener> mListeners = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        mFrameClock = FrameClock.getInstance();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (RecordingListener listener : mListeners) {
+            mFrameClock.removeListener(listener);
+        }
+    }
+
+    private RecordingListener addListener() {
+        final RecordingListener listener = new RecordingListener();
+        mListeners.add(listener);
+        mFrameClock.addListener(listener);
+        return listener;
+    }
+
+    @Test
+    public void doFrame_passesSameFrameTimeToAllListeners() throws Exception {
+        final RecordingListener first = addListener();
+        final RecordingListener second = addListener();
+
+        mFrameClock.doFrame(FRAME_TIME_NANOS);
+
+        assertEquals(1, first.mFrames);
+        assertEquals(1, second.mFrames);
+        assertEquals(FRAME_TIME_NANOS, first.mLastFrameTime);
+        assertEquals(FRAME_TIME_NANOS, second.mLastFrameTime);
+    }
+
+    @Test
+    public void addListener_twice_isCalledOncePerFrame() throws Exception {
+        final RecordingListener listener = addListener();
+        mFrameClock.addListener(listener);
+
+        mFrameClock.doFrame(FRAME_TIME_NANOS);
+
+        assertEquals(1, listener.mFrames);
+    }
+
+    @Test
+    public void removeListener_duringDispatch_skipsRemovedListener() throws Exception {
+        final RecordingListener second = new RecordingListener();
+        mListeners.add(second);
+        final RecordingListener first = new RecordingListener() {
+            @Override
+            public void onFrame(long frameTimeNanos) {
+                super.onFrame(frameTimeNanos);
+                mFrameClock.removeListener(this);
+                mFrameClock.removeListener(second);
+            }
+        };
+        mListeners.add(first);
+        mFrameClock.addListener(first);
+        mFrameClock.addListener(second);
+
+        mFrameClock.doFrame(FRAME_TIME_NANOS);
+        mFrameClock.doFrame(2 * FRAME_TIME_NANOS);
+
+        assertEquals(1, first.mFrames);
+        assertEquals(0, second.mFrames);
+        assertFalse(mFrameClock.hasListener(first));
+        assertFalse(mFrameClock.hasListener(second));
+    }
+
+    @Test
+    public void addListener_duringDispatch_isCalledFromNextFrame() throws Exception {
+        final RecordingListener added = new RecordingListener();
+        mListeners.add(added);
+        final RecordingListener adding = new RecordingListener() {
+            @Override
+            public void onFrame(long frameTimeNanos) {
+                super.onFrame(frameTimeNanos);
+                mFrameClock.addListener(added);
+            }
+        };
+        mListeners.add(adding);
+        mFrameClock.addListener(adding);
+
+        mFrameClock.doFrame(FRAME_TIME_NANOS);
+        assertEquals(0, added.mFrames);
+        assertTrue(mFrameClock.hasListener(added));
+
+        mFrameClock.doFrame(2 * FRAME_TIME_NANOS);
+        assertEquals(1, added.mFrames);
+    }
+
+    @Test
+    public void removeAndAddListener_duringDispatch_keepsListener() throws Exception {
+        final RecordingListener listener = new RecordingListener() {
+            @Override
+            public void onFrame(long frameTimeNanos) {
+                super.onFrame(frameTimeNanos);
+                mFrameClock.removeListener(this);
+                mFrameClock.addListener(this);
+            }
+        };
+        mListeners.add(listener);
+        mFrameClock.addListener(listener);
+
+        mFrameClock.doFrame(FRAME_TIME_NANOS);
+        mFrameClock.doFrame(2 * FRAME_TIME_NANOS);
+
+        assertTrue(mFrameClock.hasListener(listener));
+        assertEquals(2, listener.mFrames);
+    }
+
+    private static class RecordingListener implements FrameClock.OnFrameListener {
+        int mFrames;
+        long mLastFrameTime;
+
+        @Override
+        public void onFrame(long frameTimeNanos) {
+            mFrames++;
+            mLastFrameTime = frameTimeNanos;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressAggregatorTest {
+
+    private static final int WORKERS = 8;
+    private static final int TASKS_PER_WORKER = 16;
+    private static final long TASK_WEIGHT = 100000;
+    private CountingFabProgress mFabProgress;
+    private ProgressAggregator mAggregator;
+
+    @Before
+    public void setUp() throws Exception {
+        mFabProgress = new CountingFabProgress(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light));
+        mAggregator = new ProgressAggregator(mFabProgress);
+    }
+
+    @Test
+    public void weightedTasks_aggregateProgress() throws Exception {
+        final ProgressAggregator.Task small = mAggregator.addTask(100);
+        final ProgressAggregator.Task large = mAggregator.addTask(300);
+
+        small.finish();
+        assertEquals(0.25f, mAggregator.getProgress(), 0.001f);
+
+        large.setProgress(0.5f);
+        assertEquals(0.625f, mAggregator.getProgress(), 0.001f);
+    }
+
+    @Test
+    public void finalAnimation_waitsForSealAndAllTasks() throws Exception {
+        final ProgressAggregator.Task task = mAggregator.addTask(10);
+        task.finish();
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(0, mFabProgress.mFinalAnimationCalls);
+
+        mAggregator.seal();
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, mFabProgress.mFinalAnimationCalls);
+
+        task.finish();
+        mAggregator.seal();
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, mFabProgress.mFinalAnimationCalls);
+    }
+
+    @Test
+    public void concurrentWorkers_completeExactlyOnce() throws Exception {
+        final ProgressAggregator.Task[][] tasks = new ProgressAggregator.Task[WORKERS][TASKS_PER_WORKER];
+        for (int i = 0; i < WORKERS; i++) {
+            for (int j = 0; j < TASKS_PER_WORKER; j++) {
+                tasks[i][j] = mAggregator.addTask(TASK_WEIGHT);
+            }
+        }
+        mAggregator.seal();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] workers = new Thread[WORKERS];
+        for (int i = 0; i < WORKERS; i++) {
+            final ProgressAggregator.Task[] workerTasks = tasks[i];
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    for (ProgressAggregator.Task task : workerTasks) {
+                        for (long work = 0; work < TASK_WEIGHT; work += 1000) {
+                            task.advance(1000);
+                        }
+                        task.finish();
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(1f, mAggregator.getProgress(), 0f);
+        Robolectric.flushForegroundThreadScheduler();
+        assertEquals(1, mFabProgress.mFinalAnimationCalls);
+    }
+
+    @Test
+    public void racingTasks_leaveViewAtHighestProgress() throws Exception {
+        final BlockingFabProgress fabProgress = new BlockingFabProgress(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light));
+        final ProgressAggregator aggregator = new ProgressAggregator(fabProgress);
+        final ProgressAggregator.Task slow = aggregator.addTask(TASK_WEIGHT);
+        final ProgressAggregator.Task fast = aggregator.addTask(TASK_WEIGHT);
+        final Thread slowWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                slow.setProgress(0.5f);
+            }
+        });
+        fabProgress.mBlockedThread = slowWorker;
+        slowWorker.start();
+
+        // the slow worker computed 0.25 and is preempted before the view gets it
+        fabProgress.mBlocked.await();
+        fast.setProgress(1f);
+        fabProgress.mRelease.countDown();
+        slowWorker.join();
+
+        assertEquals(0.75f, fabProgress.mLastProgress, 0f);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addTask_afterSeal_throws() throws Exception {
+        mAggregator.seal();
+        mAggregator.addTask(1);
+    }
+
+    private static class CountingFabProgress extends FabProgress {
+
+        private int mFinalAnimationCalls;
+
+        CountingFabProgress(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void startProgressFinalAnimation() {
+            mFinalAnimationCalls++;
+        }
+    }
+
+    private static class BlockingFabProgress extends FabProgress {
+
+        private final CountDownLatch mBlocked = new CountDownLatch(1);
+        private final CountDownLatch mRelease = new CountDownLatch(1);
+        private volatile Thread mBlockedThread;
+        private volatile float mLastProgress = Float.NaN;
+
+        BlockingFabProgress(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void setProgress(float progress) {
+            if (Thread.currentThread() == mBlockedThread && mBlocked.getCount() > 0) {
+                mBlocked.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            mLastProgress = progress;
+        }
+    }
+}
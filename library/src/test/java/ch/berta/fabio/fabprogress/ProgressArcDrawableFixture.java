@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Holds a visible {@link ProgressArcDrawable} for the drawable tests and plays its frames
+ * directly, without a view and without the {@link FrameClock}.
+ */
+final class ProgressArcDrawableFixture {
+
+    static final long FRAME_TIME_NANOS = 16666667;
+    static final long NANOS_PER_MILLI = 1000000;
+    static final int SIZE = 100;
+    private final ProgressArcDrawable mDrawable;
+    private long mFrameTime;
+
+    private ProgressArcDrawableFixture() {
+        mDrawable = new ProgressArcDrawable(RuntimeEnvironment.application);
+        mDrawable.setBounds(0, 0, SIZE, SIZE);
+        mDrawable.setVisible(true, false);
+    }
+
+    /**
+     * Creates a visible drawable of {@link #SIZE} pixels, its frames start at a frame time of 0.
+     *
+     * @return the new fixture
+     */
+    static ProgressArcDrawableFixture create() {
+        return new ProgressArcDrawableFixture();
+    }
+
+    ProgressArcDrawable getDrawable() {
+        return mDrawable;
+    }
+
+    /**
+     * Returns the time of the last frame played.
+     *
+     * @return the frame time in nanoseconds
+     */
+    long getFrameTime() {
+        return mFrameTime;
+    }
+
+    /**
+     * Lets time pass without playing any frames, e.g. while the drawable is hidden.
+     *
+     * @param durationNanos the time to let pass in nanoseconds
+     */
+    void skipTime(long durationNanos) {
+        mFrameTime += durationNanos;
+    }
+
+    /**
+     * Plays a frame at the current frame time, e.g. the first frame after a start.
+     */
+    void doFrame() {
+        mDrawable.doFrame(mFrameTime);
+    }
+
+    /**
+     * Plays the given number of frames, one vsync apart.
+     *
+     * @param frames the number of frames to play
+     */
+    void playFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            mFrameTime += FRAME_TIME_NANOS;
+            mDrawable.doFrame(mFrameTime);
+        }
+    }
+
+    /**
+     * Plays frames until the frame time reaches the given time.
+     *
+     * @param timeMillis the frame time to play until in milliseconds
+     */
+    void playUntil(long timeMillis) {
+        while (mFrameTime < timeMillis * NANOS_PER_MILLI) {
+            playFrames(1);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressArcDrawableFrameRateTest {
+
+    private ProgressArcDrawableFixture mFixture;
+    private ProgressArcDrawable mDrawable;
+    private ProgressTraceRecorder mRecorder;
+    private boolean mFinalAnimationComplete;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = ProgressArcDrawableFixture.create();
+        mDrawable = mFixture.getDrawable();
+        mDrawable.setFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                mFinalAnimationComplete = true;
+            }
+        });
+        // only rendered frames are traced
+        mRecorder = new ProgressTraceRecorder(1000);
+        mDrawable.setTraceRecorder(mRecorder);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDrawable.stop();
+        AnimationConditions.getInstance(RuntimeEnvironment.application).setConditions(false, 1f);
+    }
+
+    /**
+     * Plays the given number of vsyncs, the first one at the time the drawable started.
+     */
+    private void playVsyncs(int count) {
+        mFixture.doFrame();
+        mFixture.playFrames(count - 1);
+    }
+
+    @Test
+    public void full_rendersEveryFrame() {
+        mDrawable.start();
+        playVsyncs(60);
+
+        assertEquals(60, mRecorder.getFrameCount());
+    }
+
+    @Test
+    public void capped_rendersEveryOtherFrameAt60Hz() {
+        mDrawable.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_CAPPED);
+        mDrawable.start();
+        playVsyncs(60);
+
+        assertEquals(30, mRecorder.getFrameCount());
+    }
+
+    @Test
+    public void static_showsStillArcWithoutFrames() {
+        mDrawable.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_STATIC);
+        mDrawable.start();
+
+        assertFalse(mDrawable.isReceivingFrames());
+        assertTrue(mDrawable.getArcFrame().sweepAngle > 0);
+    }
+
+    @Test
+    public void static_completesWithoutAnimating() {
+        mDrawable.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_STATIC);
+        mDrawable.start();
+        mDrawable.startFinalAnimation();
+
+        assertTrue(mDrawable.isReceivingFrames());
+        mFixture.doFrame();
+        assertTrue(mFinalAnimationComplete);
+        assertFalse(mDrawable.isRunning());
+    }
+
+    @Test
+    public void auto_followsSystemConditions() {
+        final AnimationConditions conditions =
+                AnimationConditions.getInstance(RuntimeEnvironment.application);
+        mDrawable.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_AUTO);
+        mDrawable.start();
+        conditions.setConditions(false, 1f);
+        assertEquals(ProgressArcDrawable.FRAME_RATE_FULL, mDrawable.getFrameRate());
+
+        conditions.setConditions(true, 1f);
+        assertEquals(ProgressArcDrawable.FRAME_RATE_CAPPED, mDrawable.getFrameRate());
+
+        conditions.setConditions(true, 0f);
+        assertEquals(ProgressArcDrawable.FRAME_RATE_STATIC, mDrawable.getFrameRate());
+        assertFalse(mDrawable.isReceivingFrames());
+
+        conditions.setConditions(false, 1f);
+        assertEquals(ProgressArcDrawable.FRAME_RATE_FULL, mDrawable.getFrameRate());
+        assertTrue(mDrawable.isReceivingFrames());
+    }
+
+    @Test
+    public void auto_stopsWatchingSystemConditionsWhileHidden() {
+        final AnimationConditions conditions =
+                AnimationConditions.getInstance(RuntimeEnvironment.application);
+        mDrawable.setFrameRatePolicy(ProgressArcDrawable.FRAME_RATE_AUTO);
+        mDrawable.start();
+        assertTrue(conditions.isWatching());
+
+        mDrawable.setVisible(false, false);
+        assertFalse(conditions.isWatching());
+
+        mDrawable.setVisible(true, false);
+        assertTrue(conditions.isWatching());
+
+        mDrawable.stop();
+        assertFalse(conditions.isWatching());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setFrameRatePolicy_rejectsUnknownPolicy() {
+        mDrawable.setFrameRatePolicy(42);
+    }
+}
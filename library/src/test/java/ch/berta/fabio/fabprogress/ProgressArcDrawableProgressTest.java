@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import ch.berta.fabio.fabprogress.core.ArcFrame;
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressArcDrawableProgressTest {
+
+    private static final int UPDATES = 1000;
+    private ProgressArcDrawableFixture mFixture;
+    private ProgressArcDrawable mDrawable;
+    private boolean mCompleted;
+
+    @Before
+    public void setUp() throws Exception {
+        // keeps the progress updates queued until the test flushes them
+        Robolectric.getForegroundThreadScheduler().pause();
+        mFixture = ProgressArcDrawableFixture.create();
+        mDrawable = mFixture.getDrawable();
+        mDrawable.setFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                mCompleted = true;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Robolectric.getForegroundThreadScheduler().unPause();
+    }
+
+    private void floodFromWorker(final float progress) throws InterruptedException {
+        final Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= UPDATES; i++) {
+                    mDrawable.setProgress(progress * i / UPDATES);
+                }
+            }
+        });
+        worker.start();
+        worker.join();
+    }
+
+    private void playUntilComplete() {
+        while (!mCompleted) {
+            mFixture.playFrames(1);
+        }
+    }
+
+    private void assertShowsProgress(float progress) {
+        assertTrue(mDrawable.isRunning());
+        assertEquals(progress, mDrawable.getDeterminateProgress(), 0f);
+        final ArcFrame expected = new ArcFrame();
+        ArcTimeline.getDeterminateFrame(progress, expected);
+        assertEquals(expected.sweepAngle, mDrawable.getArcFrame().sweepAngle, 0f);
+    }
+
+    @Test
+    public void setProgressFromWorker_showsLatestProgress() throws Exception {
+        floodFromWorker(0.5f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.5f);
+    }
+
+    @Test
+    public void setProgressFromWorker_whileFramesRun_postsNothing() throws Exception {
+        floodFromWorker(0.5f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        final int pending = Robolectric.getForegroundThreadScheduler().size();
+        floodFromWorker(0.8f);
+        assertEquals(pending, Robolectric.getForegroundThreadScheduler().size());
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.8f);
+    }
+
+    @Test
+    public void setProgressFromWorker_afterFramesStopped_showsProgress() throws Exception {
+        floodFromWorker(0.5f);
+        Robolectric.flushForegroundThreadScheduler();
+        // the second frame finds no new progress and stops the frames
+        mFixture.playFrames(2);
+        assertFalse(mDrawable.isReceivingFrames());
+
+        floodFromWorker(0.8f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.8f);
+    }
+
+    @Test
+    public void setProgressFromWorker_afterCompleteAndReset_showsProgress() throws Exception {
+        floodFromWorker(0.5f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        // like a reporter that finishes: the last progress is still queued when the final
+        // animation starts
+        mDrawable.setProgress(1f);
+        mDrawable.startFinalAnimation();
+        Robolectric.flushForegroundThreadScheduler();
+        playUntilComplete();
+        mDrawable.stop();
+
+        floodFromWorker(0.8f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.8f);
+    }
+
+    @Test
+    public void setProgressFromWorker_afterStopWithQueuedProgress_showsProgress() throws Exception {
+        floodFromWorker(0.5f);
+        mDrawable.stop();
+        Robolectric.flushForegroundThreadScheduler();
+
+        floodFromWorker(0.8f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.8f);
+    }
+
+    @Test
+    public void setProgressFromWorker_afterRestart_showsProgress() throws Exception {
+        floodFromWorker(0.5f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+        mDrawable.setProgress(0.6f);
+        mDrawable.start();
+        mFixture.playFrames(1);
+
+        floodFromWorker(0.8f);
+        Robolectric.flushForegroundThreadScheduler();
+        mFixture.playFrames(1);
+
+        assertShowsProgress(0.8f);
+    }
+}
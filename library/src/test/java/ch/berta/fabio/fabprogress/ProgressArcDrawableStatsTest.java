@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressArcDrawableStatsTest {
+
+    private static final long FRAME_TIME_NANOS = ProgressArcDrawableFixture.FRAME_TIME_NANOS;
+    private static final long NANOS_PER_MILLI = ProgressArcDrawableFixture.NANOS_PER_MILLI;
+    private ProgressArcDrawableFixture mFixture;
+    private ProgressArcDrawable mDrawable;
+    private final ProgressStats mStats = new ProgressStats();
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = ProgressArcDrawableFixture.create();
+        mDrawable = mFixture.getDrawable();
+    }
+
+    private void playCycle() {
+        mFixture.doFrame();
+        mFixture.playUntil(ArcTimeline.CYCLE_DURATION);
+    }
+
+    @Test
+    public void disabled_leavesSnapshotUntouched() {
+        mDrawable.start();
+        playCycle();
+
+        assertFalse(mDrawable.getStats(mStats));
+        assertEquals(0, mStats.getRenderedFrames());
+    }
+
+    @Test
+    public void indeterminateCycle_splitsTimeBetweenGrowAndShrink() {
+        mDrawable.setStatsEnabled(true);
+        mDrawable.start();
+        playCycle();
+
+        assertTrue(mDrawable.getStats(mStats));
+        final long halfCycle = ArcTimeline.CYCLE_DURATION / 2 * NANOS_PER_MILLI;
+        assertEquals(halfCycle, mStats.getGrowTimeNanos(), 2 * FRAME_TIME_NANOS);
+        assertEquals(halfCycle, mStats.getShrinkTimeNanos(), 2 * FRAME_TIME_NANOS);
+        assertEquals(0, mStats.getCompleteTimeNanos());
+        assertTrue(mStats.getRenderedFrames() > 0);
+        assertTrue(mStats.getInvalidations() >= mStats.getRenderedFrames());
+    }
+
+    @Test
+    public void repeatedFrameTime_countsAsSkipped() {
+        mDrawable.setStatsEnabled(true);
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playFrames(1);
+        mFixture.doFrame();
+
+        mDrawable.getStats(mStats);
+        assertEquals(1, mStats.getSkippedFrames());
+    }
+
+    @Test
+    public void draw_isCounted() {
+        mDrawable.setStatsEnabled(true);
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playFrames(1);
+        final int size = ProgressArcDrawableFixture.SIZE;
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888));
+        mDrawable.draw(canvas);
+        mDrawable.draw(canvas);
+
+        mDrawable.getStats(mStats);
+        assertEquals(2, mStats.getDrawCount());
+        assertTrue(mStats.getMaxDrawTimeNanos() <= mStats.getDrawTimeNanos());
+    }
+
+    @Test
+    public void listener_receivesSameSnapshotOncePerSecond() {
+        final ProgressStats[] received = new ProgressStats[3];
+        final int[] calls = new int[1];
+        mDrawable.setStatsEnabled(true);
+        mDrawable.setStatsListener(new ProgressStatsListener() {
+            @Override
+            public void onProgressStats(@NonNull ProgressStats stats) {
+                received[Math.min(calls[0], received.length - 1)] = stats;
+                calls[0]++;
+            }
+        });
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playUntil(2900);
+
+        assertEquals(2, calls[0]);
+        assertSame(received[0], received[1]);
+    }
+
+    @Test
+    public void reset_clearsCounters() {
+        mDrawable.setStatsEnabled(true);
+        mDrawable.start();
+        playCycle();
+        mDrawable.resetStats();
+
+        mDrawable.getStats(mStats);
+        assertEquals(0, mStats.getRenderedFrames());
+        assertEquals(0, mStats.getGrowTimeNanos());
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import ch.berta.fabio.fabprogress.core.ArcFrame;
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressArcDrawableTest {
+
+    private static final int STROKE_WIDTH = 4;
+    private static final long PAUSE_NANOS = 5000 * ProgressArcDrawableFixture.NANOS_PER_MILLI;
+    private ProgressArcDrawableFixture mFixture;
+    private ProgressArcDrawable mDrawable;
+    private int mInvalidations;
+    private long mCompleteTime = -1;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = ProgressArcDrawableFixture.create();
+        mDrawable = mFixture.getDrawable();
+    }
+
+    private void countInvalidations() {
+        mDrawable.setCallback(new Drawable.Callback() {
+            @Override
+            public void invalidateDrawable(@NonNull Drawable who) {
+                mInvalidations++;
+            }
+
+            @Override
+            public void scheduleDrawable(@NonNull Drawable who, @NonNull Runnable what, long when) {
+            }
+
+            @Override
+            public void unscheduleDrawable(@NonNull Drawable who, @NonNull Runnable what) {
+            }
+        });
+    }
+
+    private void recordCompletion() {
+        mDrawable.setFinalAnimationListener(new ProgressFinalAnimationListener() {
+            @Override
+            public void onProgressFinalAnimationComplete() {
+                mCompleteTime = mFixture.getFrameTime();
+            }
+        });
+    }
+
+    private void playUntilComplete() {
+        while (mCompleteTime == -1) {
+            mFixture.playFrames(1);
+        }
+    }
+
+    /**
+     * Asserts that the rect covers every point of the arc, including the stroke.
+     */
+    private static void assertCoversArc(Rect rect, float startAngle, float sweepAngle) {
+        final int size = ProgressArcDrawableFixture.SIZE;
+        final float radius = (size - STROKE_WIDTH) / 2f;
+        final float center = size / 2f;
+        final float halfStroke = STROKE_WIDTH / 2f;
+        for (float angle = startAngle; angle <= startAngle + sweepAngle; angle += 1f) {
+            final float x = center + radius * (float) Math.cos(Math.toRadians(angle));
+            final float y = center + radius * (float) Math.sin(Math.toRadians(angle));
+            assertTrue("arc at " + angle + " outside " + rect,
+                    rect.left <= x - halfStroke && rect.right >= x + halfStroke
+                            && rect.top <= y - halfStroke && rect.bottom >= y + halfStroke);
+        }
+    }
+
+    @Test
+    public void new_isNotRunning() throws Exception {
+        assertFalse(mDrawable.isRunning());
+        assertFalse(mDrawable.isReceivingFrames());
+    }
+
+    @Test
+    public void start_animatesArc() throws Exception {
+        mDrawable.start();
+        assertTrue(mDrawable.isRunning());
+        assertTrue(mDrawable.isReceivingFrames());
+
+        mFixture.playFrames(1);
+        final ArcFrame first = new ArcFrame();
+        first.set(mDrawable.getArcFrame());
+        mFixture.playFrames(10);
+        assertNotEquals(first.startAngle, mDrawable.getArcFrame().startAngle, 0f);
+    }
+
+    @Test
+    public void stop_stopsFramesAndHidesArc() throws Exception {
+        mDrawable.start();
+        mFixture.playFrames(10);
+
+        mDrawable.stop();
+
+        assertFalse(mDrawable.isRunning());
+        assertFalse(mDrawable.isReceivingFrames());
+        assertEquals(0f, mDrawable.getArcFrame().sweepAngle, 0f);
+    }
+
+    @Test
+    public void showProgress_drawsDeterminateArc() throws Exception {
+        mDrawable.showProgress(0.5f);
+        assertTrue(mDrawable.isRunning());
+        mFixture.playFrames(1);
+
+        final ArcFrame expected = new ArcFrame();
+        ArcTimeline.getDeterminateFrame(0.5f, expected);
+        assertEquals(expected.sweepAngle, mDrawable.getArcFrame().sweepAngle, 0f);
+        assertEquals(0.5f, mDrawable.getDeterminateProgress(), 0f);
+    }
+
+    @Test
+    public void start_afterProgress_goesBackToSpinning() throws Exception {
+        mDrawable.showProgress(0.5f);
+        mFixture.playFrames(1);
+
+        mDrawable.start();
+
+        assertTrue(Float.isNaN(mDrawable.getDeterminateProgress()));
+    }
+
+    @Test
+    public void setVisible_false_stopsFramesAndKeepsPlayTime() throws Exception {
+        mDrawable.start();
+        mFixture.playFrames(30);
+        final long playTime = mDrawable.getPlayTime();
+
+        mDrawable.setVisible(false, false);
+
+        assertTrue(mDrawable.isRunning());
+        assertFalse(mDrawable.isReceivingFrames());
+        assertEquals(playTime, mDrawable.getPlayTime());
+    }
+
+    @Test
+    public void setVisible_trueAfterPause_continuesFromSamePlayTime() throws Exception {
+        mDrawable.start();
+        mFixture.playFrames(30);
+        final long playTime = mDrawable.getPlayTime();
+        mDrawable.setVisible(false, false);
+
+        mFixture.skipTime(PAUSE_NANOS);
+        mDrawable.setVisible(true, false);
+        assertTrue(mDrawable.isReceivingFrames());
+
+        // the first frame after the pause shows where the circle stopped
+        mFixture.doFrame();
+        assertEquals(playTime, mDrawable.getPlayTime());
+        mFixture.playFrames(1);
+        assertEquals(playTime + ProgressArcDrawableFixture.FRAME_TIME_NANOS
+                / ProgressArcDrawableFixture.NANOS_PER_MILLI, mDrawable.getPlayTime());
+    }
+
+    @Test
+    public void imageView_pausesCircleWhenHidden() throws Exception {
+        final ImageView imageView = new ImageView(RuntimeEnvironment.application);
+        imageView.setImageDrawable(mDrawable);
+        assertSame(imageView, mDrawable.getCallback());
+        mDrawable.start();
+        assertTrue(mDrawable.isReceivingFrames());
+
+        imageView.setVisibility(View.GONE);
+        assertFalse(mDrawable.isReceivingFrames());
+
+        imageView.setVisibility(View.VISIBLE);
+        assertTrue(mDrawable.isReceivingFrames());
+    }
+
+    @Test
+    public void dirtyBounds_coverLastAndCurrentArc() throws Exception {
+        mDrawable.setStrokeWidth(STROKE_WIDTH);
+        countInvalidations();
+        mDrawable.start();
+        final ArcFrame last = new ArcFrame();
+        mFixture.doFrame();
+        last.set(mDrawable.getArcFrame());
+
+        while (mFixture.getFrameTime()
+                < ArcTimeline.CYCLE_DURATION * ProgressArcDrawableFixture.NANOS_PER_MILLI) {
+            final int invalidations = mInvalidations;
+            mFixture.playFrames(1);
+            if (mInvalidations == invalidations) {
+                continue;
+            }
+
+            final ArcFrame current = mDrawable.getArcFrame();
+            final Rect dirty = mDrawable.getArcDirtyBounds();
+            assertCoversArc(dirty, last.startAngle, last.sweepAngle);
+            assertCoversArc(dirty, current.startAngle, current.sweepAngle);
+            last.set(current);
+        }
+    }
+
+    @Test
+    public void dirtyBounds_shortArc_areSmallerThanBounds() throws Exception {
+        mDrawable.setStrokeWidth(STROKE_WIDTH);
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playFrames(1);
+
+        final int size = ProgressArcDrawableFixture.SIZE;
+        final Rect dirty = mDrawable.getArcDirtyBounds();
+        assertTrue(dirty.width() * dirty.height() < size * size / 2);
+    }
+
+    @Test
+    public void doFrame_sameArc_invalidatesOnce() throws Exception {
+        countInvalidations();
+        mDrawable.start();
+        mFixture.playFrames(1);
+        final int invalidations = mInvalidations;
+
+        mFixture.doFrame();
+
+        assertEquals(invalidations, mInvalidations);
+    }
+
+    @Test
+    public void default_waitsForCycleEnd() throws Exception {
+        recordCompletion();
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playUntil(300);
+        mDrawable.startFinalAnimation();
+
+        mFixture.playFrames(1);
+        assertEquals(ArcTimeline.PHASE_GROW, mDrawable.getArcFrame().phase);
+
+        playUntilComplete();
+        assertTrue(mCompleteTime >= (ArcTimeline.CYCLE_DURATION + ArcTimeline.COMPLETE_DURATION)
+                * ProgressArcDrawableFixture.NANOS_PER_MILLI);
+    }
+
+    @Test
+    public void completeImmediately_completesFromCurrentArcOnNextFrame() throws Exception {
+        mDrawable.setCompleteImmediately(true);
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playUntil(300);
+        final ArcFrame before = new ArcFrame();
+        before.set(mDrawable.getArcFrame());
+        mDrawable.startFinalAnimation();
+
+        mFixture.playFrames(1);
+        final ArcFrame after = mDrawable.getArcFrame();
+        assertEquals(ArcTimeline.PHASE_COMPLETE, after.phase);
+        assertTrue(after.sweepAngle >= before.sweepAngle);
+        assertTrue(after.sweepAngle - before.sweepAngle < 10f);
+    }
+
+    @Test
+    public void completeDuration_isUsedForFinalAnimation() throws Exception {
+        final long duration = 500;
+        recordCompletion();
+        mDrawable.setCompleteImmediately(true);
+        mDrawable.setCompleteDuration(duration);
+        mDrawable.start();
+        mFixture.doFrame();
+        mDrawable.startFinalAnimation();
+
+        playUntilComplete();
+        assertEquals(duration * ProgressArcDrawableFixture.NANOS_PER_MILLI, mCompleteTime,
+                ProgressArcDrawableFixture.FRAME_TIME_NANOS);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void completeDuration_rejectsZero() throws Exception {
+        mDrawable.setCompleteDuration(0);
+    }
+
+    /**
+     * Robolectric does not run API 25 yet, so only the fallback to main thread frames is covered.
+     */
+    @Test
+    public void renderThread_unsupportedPlatform_fallsBackToFrames() throws Exception {
+        mDrawable.setRenderThreadEnabled(true);
+        mDrawable.start();
+
+        assertFalse(mDrawable.isRenderThreadAnimating());
+        assertTrue(mDrawable.isReceivingFrames());
+        mFixture.doFrame();
+        mFixture.playFrames(1);
+        assertTrue(mDrawable.getArcFrame().sweepAngle > 0);
+    }
+
+    @Test
+    public void renderThread_finalAnimation_completesOnFrames() throws Exception {
+        mDrawable.setRenderThreadEnabled(true);
+        mDrawable.setCompleteImmediately(true);
+        mDrawable.start();
+        mFixture.doFrame();
+        mDrawable.startFinalAnimation();
+
+        assertFalse(mDrawable.isRenderThreadAnimating());
+        assertTrue(mDrawable.isReceivingFrames());
+    }
+}
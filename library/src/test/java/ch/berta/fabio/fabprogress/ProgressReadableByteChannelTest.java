@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.berta.fabio.fabprogress;
+
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressReadableByteChannelTest {
+
+    /**
+     * The most progress updates of a transfer, the batches plus the one at the end.
+     */
+    private static final int MAX_REPORTS = 201;
+    private static final int TOTAL_BYTES = 1024 * 1024;
+    private static final int BUFFER_SIZE = 512;
+    private RecordingFabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFabProgress = new RecordingFabProgress(new ContextThemeWrapper(
+                RuntimeEnvironment.application, R.style.Theme_AppCompat_Light));
+        mFabProgress.startProgress();
+    }
+
+    private ReadableByteChannel wrap(int length, long totalBytes) {
+        return new ProgressReadableByteChannel(
+                Channels.newChannel(new ByteArrayInputStream(new byte[length])), mFabProgress,
+                totalBytes);
+    }
+
+    private void readToEnd(ReadableByteChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while (channel.read(buffer) != -1) {
+            buffer.clear();
+        }
+        Robolectric.flushForegroundThreadScheduler();
+    }
+
+    @Test
+    public void read_reportsInBatches() throws Exception {
+        readToEnd(wrap(TOTAL_BYTES, TOTAL_BYTES));
+
+        assertTrue(mFabProgress.mProgress.size() + " updates",
+                mFabProgress.mProgress.size() <= MAX_REPORTS);
+        assertTrue(mFabProgress.mProgress.size() < TOTAL_BYTES / BUFFER_SIZE);
+        assertEquals(1f, mFabProgress.getLastProgress(), 0f);
+        assertEquals(1, mFabProgress.mFinalAnimations);
+    }
+
+    @Test
+    public void read_shortChannel_finishesAtEnd() throws Exception {
+        readToEnd(wrap(TOTAL_BYTES / 2, TOTAL_BYTES));
+
+        assertEquals(1f, mFabProgress.getLastProgress(), 0f);
+        assertEquals(1, mFabProgress.mFinalAnimations);
+    }
+
+    @Test
+    public void read_unknownTotal_onlyReportsEnd() throws Exception {
+        readToEnd(wrap(TOTAL_BYTES, -1));
+
+        assertTrue(mFabProgress.mProgress.isEmpty());
+        assertEquals(1, mFabProgress.mFinalAnimations);
+    }
+
+    @Test
+    public void read_pastEnd_finishesOnce() throws Exception {
+        final ReadableByteChannel channel = wrap(BUFFER_SIZE, BUFFER_SIZE);
+        readToEnd(channel);
+        assertEquals(-1, channel.read(ByteBuffer.allocate(BUFFER_SIZE)));
+        Robolectric.flushForegroundThreadScheduler();
+
+        assertEquals(1, mFabProgress.mFinalAnimations);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.res.ColorStateList;
+import android.graphics.Color;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressStateStoreTest {
+
+    private FabProgressFixture mFixture;
+    private ProgressStateStore mStore;
+    private FabProgress mFirstRow;
+    private FabProgress mSecondRow;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = FabProgressFixture.create();
+        mFirstRow = mFixture.getFabProgress();
+        mSecondRow = mFixture.addFabProgress();
+        mStore = new ProgressStateStore();
+    }
+
+    @Test
+    public void recycledView_doesNotLeakSpinner() {
+        mStore.bind(mFirstRow, 1);
+        mStore.startProgress(1);
+        assertTrue(mFirstRow.getArcDrawable().isRunning());
+
+        mStore.unbind(mFirstRow);
+        mStore.bind(mFirstRow, 2);
+
+        assertFalse(mFirstRow.getArcDrawable().isRunning());
+        assertFalse(mFirstRow.getArcDrawable().isReceivingFrames());
+        assertTrue(mStore.isInProgress(1));
+        assertFalse(mStore.isInProgress(2));
+    }
+
+    @Test
+    public void rebind_continuesTimeline() {
+        mStore.bind(mFirstRow, 1);
+        mStore.startProgress(1);
+        final ProgressArcDrawable arcDrawable = mFirstRow.getArcDrawable();
+        mFixture.doArcFrame();
+        mFixture.playArcFrames(500);
+        final long playTime = arcDrawable.getPlayTime();
+        assertTrue(playTime > 0);
+
+        mStore.unbind(mFirstRow);
+        mStore.bind(mSecondRow, 1);
+
+        assertTrue(mSecondRow.getArcDrawable().isRunning());
+        assertTrue(mSecondRow.getArcDrawable().getPlayTime() >= playTime);
+    }
+
+    @Test
+    public void unboundItem_isDrivenWithoutView() {
+        mStore.startProgress(7);
+        mStore.setProgress(7, 0.5f);
+        assertTrue(mStore.isInProgress(7));
+
+        mStore.startProgressFinalAnimation(7);
+        assertTrue(mStore.isComplete(7));
+
+        final Drawable fabIcon = mFirstRow.getDrawable();
+        mStore.bind(mFirstRow, 7);
+        assertNotSame(fabIcon, mFirstRow.getDrawable());
+        assertFalse(mFirstRow.getArcDrawable() != null && mFirstRow.getArcDrawable().isRunning());
+
+        // the next item gets the original icon back
+        mStore.bind(mFirstRow, 8);
+        assertSame(fabIcon, mFirstRow.getDrawable());
+    }
+
+    @Test
+    public void determinateProgress_survivesRecycling() {
+        mStore.bind(mFirstRow, 1);
+        mStore.setProgress(1, 0.25f);
+        mStore.unbind(mFirstRow);
+        mStore.bind(mSecondRow, 1);
+
+        assertEquals(0.25f, mSecondRow.getArcDrawable().getDeterminateProgress(), 0f);
+    }
+
+    @Test
+    public void bindingItemToNewView_unbindsOldView() {
+        mStore.bind(mFirstRow, 1);
+        mStore.startProgress(1);
+        mStore.bind(mSecondRow, 1);
+
+        assertFalse(mFirstRow.getArcDrawable().isRunning());
+        assertTrue(mSecondRow.getArcDrawable().isRunning());
+    }
+
+    @Test
+    public void remove_forgetsItemAndResetsView() {
+        mStore.bind(mFirstRow, 1);
+        mStore.startProgress(1);
+        mStore.remove(1);
+
+        assertEquals(0, mStore.size());
+        assertFalse(mFirstRow.getArcDrawable().isRunning());
+    }
+
+    @Test
+    public void bindIdleItem_keepsItemIconAndTint() {
+        final Drawable itemIcon = new ColorDrawable(Color.RED);
+        final ColorStateList itemTint = ColorStateList.valueOf(Color.BLUE);
+        mFirstRow.setImageDrawable(itemIcon);
+        mFirstRow.setBackgroundTintList(itemTint);
+
+        mStore.bind(mFirstRow, 1);
+        mStore.unbind(mFirstRow);
+        mStore.bind(mFirstRow, 2);
+
+        assertSame(itemIcon, mFirstRow.getDrawable());
+        assertSame(itemTint, mFirstRow.getBackgroundTintList());
+        assertNull(mFirstRow.getArcDrawable());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import ch.berta.fabio.fabprogress.core.ArcTimeline;
+import ch.berta.fabio.fabprogress.core.FrameTrace;
+import ch.berta.fabio.fabprogress.core.FrameTraceReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressTraceRecorderTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+    private ProgressArcDrawableFixture mFixture;
+    private ProgressArcDrawable mDrawable;
+    private ProgressTraceRecorder mRecorder;
+
+    @Before
+    public void setUp() throws Exception {
+        mFixture = ProgressArcDrawableFixture.create();
+        mDrawable = mFixture.getDrawable();
+        mRecorder = new ProgressTraceRecorder(4);
+        mDrawable.setTraceRecorder(mRecorder);
+    }
+
+    @Test
+    public void frames_areRecordedUpToCapacity() {
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playFrames(9);
+
+        assertEquals(4, mRecorder.getFrameCount());
+        mRecorder.clear();
+        assertEquals(0, mRecorder.getFrameCount());
+    }
+
+    @Test
+    public void flush_writesFramesWithDrawDurations() throws Exception {
+        mDrawable.start();
+        mFixture.doFrame();
+        mFixture.playFrames(1);
+        final int size = ProgressArcDrawableFixture.SIZE;
+        mDrawable.draw(new Canvas(Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888)));
+        mFixture.playFrames(1);
+
+        final File file = mFolder.newFile("trace.bin");
+        assertTrue(mRecorder.flush(file));
+        while (mRecorder.isFlushing()) {
+            Thread.sleep(5);
+        }
+
+        final InputStream in = new FileInputStream(file);
+        try {
+            final FrameTraceReader reader = new FrameTraceReader(in);
+            assertEquals(3, reader.getCount());
+
+            final FrameTraceReader.Record record = new FrameTraceReader.Record();
+            assertTrue(reader.next(record));
+            assertEquals(0, record.frameTimeNanos);
+            assertEquals(ArcTimeline.PHASE_GROW, record.phase);
+            assertTrue(reader.next(record));
+            assertTrue(record.drawDurationNanos >= 0);
+            assertTrue(reader.next(record));
+            assertEquals(FrameTrace.NOT_DRAWN, record.drawDurationNanos);
+            assertFalse(reader.next(record));
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void removedRecorder_stopsRecording() {
+        mDrawable.setTraceRecorder(null);
+        mDrawable.start();
+        mFixture.doFrame();
+
+        assertEquals(0, mRecorder.getFrameCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void sharedRecorder_throws() {
+        final ProgressArcDrawable other = new ProgressArcDrawable(RuntimeEnvironment.application);
+        other.setTraceRecorder(mRecorder);
+    }
+
+    @Test
+    public void removedRecorder_canTraceAnotherDrawable() {
+        mDrawable.setTraceRecorder(null);
+        final ProgressArcDrawableFixture other = ProgressArcDrawableFixture.create();
+        other.getDrawable().setTraceRecorder(mRecorder);
+        other.getDrawable().start();
+        other.doFrame();
+
+        assertEquals(1, mRecorder.getFrameCount());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ProgressWritableByteChannelTest {
+
+    private static final int TOTAL_BYTES = 10;
+    private FabProgress mFabProgress;
+
+    @Before
+    public void setUp() throws Exception {
+        mFabProgress = new FabProgress(new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light), null);
+        mFabProgress.startProgress();
+    }
+
+    private int getProgressState() {
+        Robolectric.flushForegroundThreadScheduler();
+        final ProgressState state = new ProgressState();
+        mFabProgress.saveProgressState(state);
+        return state.state;
+    }
+
+    @Test
+    public void close_afterAllBytes_startsFinalAnimation() throws Exception {
+        final ProgressWritableByteChannel channel = new ProgressWritableByteChannel(
+                Channels.newChannel(new ByteArrayOutputStream()), mFabProgress, TOTAL_BYTES);
+        channel.write(ByteBuffer.allocate(TOTAL_BYTES));
+        channel.close();
+
+        assertEquals(ProgressState.COMPLETING, getProgressState());
+    }
+
+    @Test
+    public void close_afterShortWrite_keepsProgress() throws Exception {
+        final ProgressWritableByteChannel channel = new ProgressWritableByteChannel(
+                Channels.newChannel(new ByteArrayOutputStream()), mFabProgress, TOTAL_BYTES);
+        channel.write(ByteBuffer.allocate(TOTAL_BYTES / 2));
+        channel.close();
+
+        assertNotEquals(ProgressState.COMPLETING, getProgressState());
+    }
+
+    @Test
+    public void close_throws_keepsProgress() throws Exception {
+        final WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                final int written = src.remaining();
+                src.position(src.limit());
+                return written;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        final ProgressWritableByteChannel channel = new ProgressWritableByteChannel(failing,
+                mFabProgress, TOTAL_BYTES);
+        channel.write(ByteBuffer.allocate(TOTAL_BYTES));
+        try {
+            channel.close();
+            fail("close should have thrown");
+        } catch (IOException expected) {
+            // the write did not make it
+        }
+
+        assertNotEquals(ProgressState.COMPLETING, getProgressState());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the progress it is given and how often its final animation is started, for the tests
+ * of the progress streams and channels.
+ */
+class RecordingFabProgress extends FabProgress {
+
+    final List<Float> mProgress = new ArrayList<>();
+    int mFinalAnimations;
+
+    RecordingFabProgress(Context context) {
+        super(context);
+    }
+
+    @Override
+    public void setProgress(float progress) {
+        mProgress.add(progress);
+        super.setProgress(progress);
+    }
+
+    @Override
+    public void startProgressFinalAnimation() {
+        mFinalAnimations++;
+        super.startProgressFinalAnimation();
+    }
+
+    /**
+     * Returns the last progress it was given.
+     *
+     * @return the last progress or NaN if it was not given any
+     */
+    float getLastProgress() {
+        return mProgress.isEmpty() ? Float.NaN : mProgress.get(mProgress.size() - 1);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2015 Fabio Berta
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package ch.berta.fabio.fabprogress;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.TypedValue;
+import android.view.ContextThemeWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 21)
+public class ResourceCacheTest {
+
+    private Context mContext;
+
+    @Before
+    public void setUp() throws Exception {
+        ResourceCache.evictAll();
+        mContext = new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat_Light);
+    }
+
+    @Test
+    public void getTint_sharesInstancePerColor() throws Exception {
+        assertSame(ResourceCache.getTint(0xff00ff00), ResourceCache.getTint(0xff00ff00));
+        assertNotSame(ResourceCache.getTint(0xff00ff00), ResourceCache.getTint(0xffff0000));
+    }
+
+    @Test
+    public void getAccentColor_isStablePerTheme() throws Exception {
+        assertEquals(ResourceCache.getAccentColor(mContext), ResourceCache.getAccentColor(mContext));
+    }
+
+    @Test
+    public void getAccentColor_resolvesEveryTheme() throws Exception {
+        final Context dark = new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat);
+        final TypedValue value = new TypedValue();
+        dark.getTheme().resolveAttribute(R.attr.colorAccent, value, true);
+
+        ResourceCache.getAccentColor(mContext);
+        assertEquals(value.data, ResourceCache.getAccentColor(dark));
+    }
+
+    @Test
+    public void getDrawable_handsOutCopiesOfCachedState() throws Exception {
+        assertFalse(ResourceCache.isDrawableCached(mContext, R.drawable.ic_done_white_24dp));
+
+        final Drawable first = ResourceCache.getDrawable(mContext, R.drawable.ic_done_white_24dp);
+        final Drawable second = ResourceCache.getDrawable(mContext, R.drawable.ic_done_white_24dp);
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotSame(first, second);
+        assertTrue(ResourceCache.isDrawableCached(mContext, R.drawable.ic_done_white_24dp));
+    }
+
+    @Test
+    public void getDrawable_isSharedAcrossThemes() throws Exception {
+        ResourceCache.getDrawable(mContext, R.drawable.ic_done_white_24dp);
+
+        // e.g. another activity or the same one after a rotation
+        final Context other = new ContextThemeWrapper(RuntimeEnvironment.application,
+                R.style.Theme_AppCompat);
+        assertTrue(ResourceCache.isDrawableCached(other, R.drawable.ic_done_white_24dp));
+        assertNotNull(ResourceCache.getDrawable(other, R.drawable.ic_done_white_24dp));
+    }
+}